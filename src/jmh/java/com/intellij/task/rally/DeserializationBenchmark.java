@@ -0,0 +1,66 @@
+package com.intellij.task.rally;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.intellij.task.rally.models.Iteration;
+import com.intellij.task.rally.models.Project;
+import com.intellij.task.rally.models.RallyObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading of query responses into models, over responses scaled from the test fixtures by repeating
+ * their results with distinct ObjectIDs.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DeserializationBenchmark {
+
+    @Param({"100", "1000", "10000", "50000"})
+    public int size;
+
+    @Param({"iteration", "project"})
+    public String fixture;
+
+    private String response;
+    private Class<? extends RallyObject> type;
+
+    @Setup
+    public void setUp() throws IOException {
+        type = "iteration".equals(fixture) ? Iteration.class : Project.class;
+        JsonObject template;
+        try (Reader reader = new InputStreamReader(
+                getClass().getResourceAsStream("/" + fixture + "-response.json"), StandardCharsets.UTF_8)) {
+            template = new Gson().fromJson(reader, JsonObject.class);
+        }
+        var queryResult = template.getAsJsonObject("QueryResult");
+        var results = queryResult.getAsJsonArray("Results");
+        var scaled = new JsonArray();
+        for (int i = 0; i < size; i++) {
+            JsonElement result = results.get(i % results.size()).deepCopy();
+            result.getAsJsonObject().addProperty("ObjectID", 10_000_000_000L + i);
+            scaled.add(result);
+        }
+        queryResult.add("Results", scaled);
+        queryResult.addProperty("TotalResultCount", size);
+        response = template.toString();
+    }
+
+    @Benchmark
+    public QueryPage<? extends RallyObject> readQueryResult() throws IOException {
+        return RallyJson.readQueryResult(new StringReader(response), type, 0);
+    }
+}
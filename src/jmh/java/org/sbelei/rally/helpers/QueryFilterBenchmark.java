@@ -0,0 +1,69 @@
+package org.sbelei.rally.helpers;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.sbelei.rally.domain.constants.DefectState;
+
+import com.rallydev.rest.util.QueryFilter;
+
+/**
+ * Building of the filters sent with every task list refresh and search.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class QueryFilterBenchmark {
+
+	/**
+	 * Filters nest one level per operand and are rendered recursively, so
+	 * thousands of them would measure the stack rather than the builder.
+	 */
+	@Param({"10", "100", "1000"})
+	public int size;
+
+	private QueryFilter[] filters;
+
+	@Setup
+	public void setUp() {
+		filters = new QueryFilter[size];
+		for (int i = 0; i < size; i++) {
+			filters[i] = FilterHelper.byFormattedId("US" + i);
+		}
+	}
+
+	@Benchmark
+	public QueryFilter buildQuery() {
+		QueryFilterBuilder builder = new QueryFilterBuilder();
+		for (QueryFilter filter : filters) {
+			builder.add(filter);
+		}
+		return builder.buildQuery();
+	}
+
+	@Benchmark
+	public String buildQueryString() {
+		return buildQuery().toString();
+	}
+
+	@Benchmark
+	public Object chunkedOr() {
+		return QueryFilterBuilder.chunkedOr(Arrays.asList(filters), 2000);
+	}
+
+	@Benchmark
+	public QueryFilter scopeFilters() {
+		QueryFilterBuilder builder = new QueryFilterBuilder();
+		builder.add(FilterHelper.byProjectId("9216950819"));
+		builder.add(FilterHelper.byIterationId("11597834390"));
+		builder.add(FilterHelper.includeByStates(DefectState.Submitted, DefectState.Open, DefectState.Reopened));
+		builder.add(FilterHelper.updatedSince(1589000000000L));
+		builder.add(FilterHelper.bySearchText("US1234"));
+		return builder.buildQuery();
+	}
+}
@@ -0,0 +1,67 @@
+package com.intellij.task.rally;
+
+import com.intellij.task.rally.models.Artifact;
+
+import java.util.*;
+
+/**
+ * Last known state of artifacts matching some query, kept to refresh it with deltas instead of refetching everything.
+ */
+class ArtifactSnapshot<T extends Artifact> {
+    static final Comparator<Artifact> BY_RANK = Comparator
+            .comparing((Artifact artifact) -> artifact.DragAndDropRank, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparingLong(artifact -> artifact.ObjectID);
+
+    private final Map<Long, T> byId = new HashMap<>();
+    private List<T> items = Collections.emptyList();
+    private Date watermark;
+    private long lastSync;
+
+    ArtifactSnapshot(Collection<T> artifacts) {
+        merge(artifacts, null);
+    }
+
+    /**
+     * @return artifacts ordered by rank, the same instance is returned until the snapshot changes
+     */
+    synchronized List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return the latest LastUpdateDate seen, measured by Rally's clock so it is safe to compare against on the server
+     */
+    synchronized Date getWatermark() {
+        return watermark;
+    }
+
+    synchronized long getLastSync() {
+        return lastSync;
+    }
+
+    /**
+     * @param changed  artifacts updated since {@link #getWatermark()}
+     * @param existing ObjectIDs of everything still matching the query, {@code null} if removals were not checked
+     * @return whether anything has changed
+     */
+    synchronized boolean merge(Collection<T> changed, Set<Long> existing) {
+        boolean modified = false;
+        if (existing != null) {
+            modified = byId.keySet().retainAll(existing);
+        }
+        for (T artifact : changed) {
+            byId.put(artifact.ObjectID, artifact);
+            if (artifact.LastUpdateDate != null && (watermark == null || artifact.LastUpdateDate.after(watermark))) {
+                watermark = artifact.LastUpdateDate;
+            }
+            modified = true;
+        }
+        if (modified || byId.size() != items.size()) {
+            var sorted = new ArrayList<>(byId.values());
+            sorted.sort(BY_RANK);
+            items = Collections.unmodifiableList(sorted);
+        }
+        lastSync = System.currentTimeMillis();
+        return modified;
+    }
+}
@@ -0,0 +1,80 @@
+package com.intellij.task.rally;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.task.rally.models.Artifact;
+import com.intellij.task.rally.models.ConversationPost;
+import com.intellij.tasks.Comment;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shared by tasks created together, e.g. for one page of the task list: when comments of one of them are asked
+ * for, discussions of all of them are fetched in one query.
+ */
+class CommentLoader {
+    private static final Logger LOG = Logger.getInstance("#com.intellij.tasks.rally.CommentLoader");
+
+    private final RallyObjectsProvider provider;
+    private final long workspaceId;
+    private final List<? extends Artifact> artifacts;
+    private volatile Map<Long, List<ConversationPost>> loaded;
+
+    CommentLoader(RallyObjectsProvider provider, long workspaceId, List<? extends Artifact> artifacts) {
+        this.provider = provider;
+        this.workspaceId = workspaceId;
+        this.artifacts = artifacts;
+    }
+
+    /**
+     * Loads discussions of all artifacts at once, to call off the EDT before the tasks are shown.
+     */
+    void preload() throws IOException {
+        loaded = provider.getComments(workspaceId, artifacts);
+    }
+
+    /**
+     * Returns preloaded discussions. Otherwise on the EDT only returns a discussion loaded before, and loads it in
+     * background, so the UI doesn't wait for Rally.
+     */
+    Comment[] getComments(Artifact artifact) {
+        var preloaded = loaded;
+        if (preloaded != null && preloaded.containsKey(artifact.ObjectID)) {
+            return toComments(preloaded.get(artifact.ObjectID));
+        }
+        var application = ApplicationManager.getApplication();
+        if (application.isDispatchThread()) {
+            var posts = provider.getLoadedComments(artifact);
+            if (posts == null) {
+                application.executeOnPooledThread(() -> load(artifact));
+                return new Comment[0];
+            }
+            return toComments(posts);
+        }
+        return toComments(load(artifact));
+    }
+
+    private List<ConversationPost> load(Artifact artifact) {
+        try {
+            List<ConversationPost> posts = provider.getComments(workspaceId, artifacts).get(artifact.ObjectID);
+            if (posts == null) {
+                // not part of the batch
+                posts = provider.getComments(workspaceId, List.of(artifact)).get(artifact.ObjectID);
+            }
+            return posts;
+        } catch (IOException e) {
+            LOG.warn("Error while fetching discussion of " + artifact.FormattedID, e);
+            return List.of();
+        }
+    }
+
+    private static Comment[] toComments(List<ConversationPost> posts) {
+        var comments = new Comment[posts.size()];
+        for (int i = 0; i < comments.length; i++) {
+            comments[i] = new RallyComment(posts.get(i));
+        }
+        return comments;
+    }
+}
@@ -0,0 +1,65 @@
+package com.intellij.task.rally;
+
+import com.intellij.task.rally.models.Iteration;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the iteration running in a project until its EndDate passes, so "use current iteration"
+ * doesn't cost an extra query on every refresh.
+ */
+class CurrentIterationCache {
+    /**
+     * How long to trust "no iteration is running", the next one may be started any moment.
+     */
+    static final long NO_ITERATION_TTL = TimeUnit.MINUTES.toMillis(15);
+    /**
+     * Used when Rally didn't send EndDate.
+     */
+    static final long DEFAULT_TTL = TimeUnit.HOURS.toMillis(1);
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @return cached entry, {@code null} if there is none or it has expired
+     */
+    Entry get(long workspaceId, long projectId, long now) {
+        var entry = entries.get(key(workspaceId, projectId));
+        return entry != null && entry.expiresAt > now ? entry : null;
+    }
+
+    void put(long workspaceId, long projectId, Iteration iteration, long now) {
+        long expiresAt;
+        if (iteration == null) {
+            expiresAt = now + NO_ITERATION_TTL;
+        } else if (iteration.EndDate != null) {
+            expiresAt = iteration.EndDate.getTime();
+        } else {
+            expiresAt = now + DEFAULT_TTL;
+        }
+        entries.put(key(workspaceId, projectId), new Entry(iteration, expiresAt));
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    private static String key(long workspaceId, long projectId) {
+        return workspaceId + ":" + projectId;
+    }
+
+    static class Entry {
+        /**
+         * {@code null} if no iteration was running
+         */
+        final Iteration iteration;
+        final long expiresAt;
+
+        Entry(Iteration iteration, long expiresAt) {
+            this.iteration = iteration;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
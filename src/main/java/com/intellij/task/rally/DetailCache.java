@@ -0,0 +1,43 @@
+package com.intellij.task.rally;
+
+import com.intellij.task.rally.models.RallyObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of details loaded on demand, like story descriptions. Values are keyed by ObjectID and
+ * {@code _objectVersion}, so a changed object is loaded again without explicit invalidation.
+ */
+class DetailCache<V> {
+    private final Map<String, V> values;
+
+    DetailCache(int maxSize) {
+        values = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    synchronized V get(RallyObject object) {
+        return values.get(key(object));
+    }
+
+    synchronized boolean contains(RallyObject object) {
+        return values.containsKey(key(object));
+    }
+
+    synchronized void put(RallyObject object, V value) {
+        values.put(key(object), value);
+    }
+
+    synchronized int size() {
+        return values.size();
+    }
+
+    private static String key(RallyObject object) {
+        return object.ObjectID + ":" + object._objectVersion;
+    }
+}
@@ -0,0 +1,74 @@
+package com.intellij.task.rally;
+
+import com.intellij.task.rally.models.Artifact;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps FormattedIDs like "US1234" to the references of artifacts seen in list queries, and keeps the artifacts
+ * resolved by {@link RallyObjectsProvider#findArtifact(long, String)}.
+ */
+class FormattedIdIndex {
+    private static final int MAX_RESOLVED = 256;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Artifact> resolved = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Artifact> eldest) {
+            return size() > MAX_RESOLVED;
+        }
+    };
+
+    void add(Artifact artifact) {
+        if (artifact.FormattedID == null || artifact._ref == null) {
+            return;
+        }
+        String id = normalize(artifact.FormattedID);
+        entries.put(id, new Entry(artifact._ref, artifact.getClass()));
+        synchronized (resolved) {
+            // list queries bring fresher data than what was resolved before
+            resolved.remove(id);
+        }
+    }
+
+    Entry get(String formattedId) {
+        return entries.get(normalize(formattedId));
+    }
+
+    void remove(String formattedId) {
+        String id = normalize(formattedId);
+        entries.remove(id);
+        synchronized (resolved) {
+            resolved.remove(id);
+        }
+    }
+
+    Artifact getResolved(String formattedId) {
+        synchronized (resolved) {
+            return resolved.get(normalize(formattedId));
+        }
+    }
+
+    void putResolved(Artifact artifact) {
+        synchronized (resolved) {
+            resolved.put(normalize(artifact.FormattedID), artifact);
+        }
+    }
+
+    private static String normalize(String formattedId) {
+        return formattedId.trim().toUpperCase(Locale.ROOT);
+    }
+
+    static class Entry {
+        final String ref;
+        final Class<? extends Artifact> type;
+
+        Entry(String ref, Class<? extends Artifact> type) {
+            this.ref = ref;
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.intellij.task.rally;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+
+/**
+ * Reads Rally timestamps like {@code 2013-04-25T14:15:21.757Z}.
+ * <p>
+ * Rally always sends them in UTC with milliseconds, so the fixed layout is decoded by hand,
+ * which is several times cheaper than Gson's default locale-dependent {@code DateFormat} chain.
+ * Anything else falls back to {@link OffsetDateTime#parse(CharSequence)}.
+ */
+class IsoDateTypeAdapter extends TypeAdapter<Date> {
+    private static final int MILLIS_LAYOUT_LENGTH = "yyyy-MM-ddTHH:mm:ss.SSSZ".length();
+
+    @Override
+    public void write(JsonWriter out, Date value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+        } else {
+            out.value(Instant.ofEpochMilli(value.getTime()).toString());
+        }
+    }
+
+    @Override
+    public Date read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return parse(in.nextString());
+    }
+
+    static Date parse(String value) {
+        if (value.length() == MILLIS_LAYOUT_LENGTH && value.charAt(10) == 'T' && value.charAt(23) == 'Z') {
+            try {
+                int year = digits(value, 0, 4);
+                int month = digits(value, 5, 2);
+                int day = digits(value, 8, 2);
+                int hour = digits(value, 11, 2);
+                int minute = digits(value, 14, 2);
+                int second = digits(value, 17, 2);
+                int millis = digits(value, 20, 3);
+                long seconds = daysFromCivil(year, month, day) * 86400L + hour * 3600L + minute * 60L + second;
+                return new Date(seconds * 1000L + millis);
+            } catch (NumberFormatException ignored) {
+                // not the layout we expected, let java.time sort it out
+            }
+        }
+        try {
+            return Date.from(OffsetDateTime.parse(value).toInstant());
+        } catch (DateTimeParseException e) {
+            throw new JsonParseException("Unparseable date: " + value, e);
+        }
+    }
+
+    private static int digits(String value, int from, int count) {
+        int result = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException(value);
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    /**
+     * Days since 1970-01-01 of the proleptic Gregorian date, see http://howardhinnant.github.io/date_algorithms.html
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = (year >= 0 ? year : year - 399) / 400;
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+}
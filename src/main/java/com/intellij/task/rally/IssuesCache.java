@@ -0,0 +1,125 @@
+package com.intellij.task.rally;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.tasks.Task;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stale-while-revalidate cache of {@code getIssues} results shared by all repositories.
+ * <p>
+ * Results younger than {@link #FRESH_TTL} are returned as is. Older ones, up to {@link #MAX_AGE}, are still
+ * returned right away, but reloaded in background for the next call. Memory is bounded by the total number of
+ * tasks kept, least recently used results are dropped first.
+ */
+class IssuesCache {
+    private static final Logger LOG = Logger.getInstance("#com.intellij.tasks.rally.IssuesCache");
+    static final long FRESH_TTL = TimeUnit.SECONDS.toMillis(30);
+    static final long MAX_AGE = TimeUnit.MINUTES.toMillis(30);
+    static final int MAX_TASKS = 5000;
+
+    private final long freshTtl;
+    private final long maxAge;
+    private final int maxTasks;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private int taskCount;
+
+    IssuesCache() {
+        this(FRESH_TTL, MAX_AGE, MAX_TASKS);
+    }
+
+    IssuesCache(long freshTtl, long maxAge, int maxTasks) {
+        this.freshTtl = freshTtl;
+        this.maxAge = maxAge;
+        this.maxTasks = maxTasks;
+    }
+
+    interface Loader {
+        Task[] load() throws Exception;
+    }
+
+    /**
+     * Returns cached tasks for {@code key}, calling {@code loader} in place if there are none or they are too old,
+     * or on {@code executor} if they are stale.
+     */
+    Task[] get(String key, long now, Loader loader, Executor executor) throws Exception {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && now - entry.loadedAt >= maxAge) {
+                remove(key);
+                entry = null;
+            }
+            if (entry != null && now - entry.loadedAt >= freshTtl && !entry.revalidating) {
+                entry.revalidating = true;
+                var stale = entry;
+                executor.execute(() -> revalidate(key, stale, loader));
+            }
+        }
+        RallyMetrics.getInstance().recordCache("issues", entry != null);
+        if (entry != null) {
+            return entry.tasks;
+        }
+        var tasks = loader.load();
+        put(key, tasks, now);
+        return tasks;
+    }
+
+    /**
+     * Reloads tasks for {@code key} right away, e.g. by a background refresh, replacing cached ones.
+     */
+    Task[] refresh(String key, Loader loader) throws Exception {
+        var tasks = loader.load();
+        put(key, tasks, System.currentTimeMillis());
+        return tasks;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private void revalidate(String key, Entry stale, Loader loader) {
+        try {
+            put(key, loader.load(), System.currentTimeMillis());
+        } catch (Exception e) {
+            LOG.warn("Error while refreshing tasks", e);
+            synchronized (this) {
+                stale.revalidating = false;
+            }
+        }
+    }
+
+    private synchronized void put(String key, Task[] tasks, long now) {
+        remove(key);
+        entries.put(key, new Entry(tasks, now));
+        taskCount += tasks.length;
+        Iterator<Entry> eldest = entries.values().iterator();
+        // keep the result just put, even if it alone exceeds the limit
+        while (taskCount > maxTasks && entries.size() > 1) {
+            taskCount -= eldest.next().tasks.length;
+            eldest.remove();
+        }
+    }
+
+    private void remove(String key) {
+        var removed = entries.remove(key);
+        if (removed != null) {
+            taskCount -= removed.tasks.length;
+        }
+    }
+
+    private static class Entry {
+        final Task[] tasks;
+        final long loadedAt;
+        boolean revalidating;
+
+        Entry(Task[] tasks, long loadedAt) {
+            this.tasks = tasks;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.intellij.task.rally;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations with buckets growing exponentially, four per doubling, from 1 microsecond
+ * to about two minutes. Percentiles are reported as the upper bound of their bucket, i.e. within 19%.
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKETS = 4;
+    private static final int BUCKETS = 27 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    void record(long nanos) {
+        long micros = Math.max(1, nanos / 1000);
+        int index = (int) (Math.log(micros) / Math.log(2) * SUB_BUCKETS);
+        counts.incrementAndGet(Math.min(BUCKETS - 1, index));
+    }
+
+    /**
+     * @param quantile e.g. 0.95 for the 95th percentile
+     * @return duration in milliseconds, 0 if nothing was recorded
+     */
+    double getPercentileMillis(double quantile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.pow(2, (double) (i + 1) / SUB_BUCKETS) / 1000;
+            }
+        }
+        return Math.pow(2, (double) BUCKETS / SUB_BUCKETS) / 1000;
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.intellij.task.rally;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory cache of workspace, project and iteration lists shared by all repositories and their editors,
+ * so switching between workspaces or reopening the settings doesn't query Rally again.
+ */
+class MetadataCache {
+    static final long TTL = TimeUnit.MINUTES.toMillis(10);
+
+    private final long ttl;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    MetadataCache() {
+        this(TTL);
+    }
+
+    MetadataCache(long ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * @return cached list, {@code null} if there is none or it has expired
+     */
+    @SuppressWarnings("unchecked")
+    <T> List<T> get(String key, long now) {
+        var entry = entries.get(key);
+        return entry != null && now - entry.loadedAt < ttl ? (List<T>) entry.items : null;
+    }
+
+    void put(String key, List<?> items, long now) {
+        entries.put(key, new Entry(items, now));
+    }
+
+    /**
+     * Drops lists whose keys start with {@code prefix}, e.g. all lists of one server.
+     */
+    void invalidate(String prefix) {
+        entries.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    private static class Entry {
+        final List<?> items;
+        final long loadedAt;
+
+        Entry(List<?> items, long loadedAt) {
+            this.items = items;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
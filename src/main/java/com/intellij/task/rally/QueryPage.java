@@ -0,0 +1,44 @@
+package com.intellij.task.rally;
+
+import java.util.List;
+
+/**
+ * Slice of Rally query results together with the cursor needed to continue from where it ends.
+ */
+public class QueryPage<T> {
+    private final List<T> items;
+    private final int offset;
+    private final int totalResultCount;
+
+    public QueryPage(List<T> items, int offset, int totalResultCount) {
+        this.items = items;
+        this.offset = offset;
+        this.totalResultCount = totalResultCount;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return 0-based position of the first item of this page in the whole result set
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getTotalResultCount() {
+        return totalResultCount;
+    }
+
+    /**
+     * @return offset to pass for the next page, i.e. the page cursor
+     */
+    public int getNextOffset() {
+        return offset + items.size();
+    }
+
+    public boolean hasMore() {
+        return getNextOffset() < totalResultCount;
+    }
+}
@@ -0,0 +1,84 @@
+package com.intellij.task.rally;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics of the requests for one type of Rally objects, see {@link RallyMetrics}.
+ */
+public class QueryStats {
+    private final String type;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong responseBytes = new AtomicLong();
+    private final AtomicLong results = new AtomicLong();
+    private final AtomicLong deserializationNanos = new AtomicLong();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    QueryStats(String type) {
+        this.type = type;
+    }
+
+    /**
+     * @param latency         nanoseconds spent waiting for the response, including retries
+     * @param bytes           size of the response body; JSON from Rally is mostly ASCII, so its length is used
+     * @param resultCount     objects in the response
+     * @param deserialization nanoseconds spent reading models out of the response
+     */
+    void record(long latency, long bytes, int resultCount, long deserialization) {
+        count.incrementAndGet();
+        this.latency.record(latency);
+        responseBytes.addAndGet(bytes);
+        results.addAndGet(resultCount);
+        deserializationNanos.addAndGet(deserialization);
+    }
+
+    void recordError() {
+        errors.incrementAndGet();
+    }
+
+    void reset() {
+        count.set(0);
+        errors.set(0);
+        responseBytes.set(0);
+        results.set(0);
+        deserializationNanos.set(0);
+        latency.reset();
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public double getLatencyP50Millis() {
+        return latency.getPercentileMillis(0.5);
+    }
+
+    public double getLatencyP95Millis() {
+        return latency.getPercentileMillis(0.95);
+    }
+
+    public double getLatencyP99Millis() {
+        return latency.getPercentileMillis(0.99);
+    }
+
+    public long getResponseBytes() {
+        return responseBytes.get();
+    }
+
+    public long getResults() {
+        return results.get();
+    }
+
+    public double getDeserializationMillis() {
+        return (double) deserializationNanos.get() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
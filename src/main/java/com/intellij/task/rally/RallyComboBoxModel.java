@@ -0,0 +1,319 @@
+package com.intellij.task.rally;
+
+import com.intellij.task.rally.models.RallyObject;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Combo box model of Rally objects used by the repository editor, backed by a prefix index (trie) over their names.
+ * <p>
+ * Items are added and removed incrementally instead of replacing the model, so reloads don't rebuild it on the EDT.
+ * {@link #setFilter(String)} narrows the visible items to those with a word of the name starting with given text,
+ * and {@link #find(long)} looks an item up by ObjectID, both without scanning all items. Items with negative
+ * ObjectID, like "Use current iteration", are not indexed and stay visible in filtered views.
+ */
+class RallyComboBoxModel<T extends RallyObject> extends AbstractListModel<T> implements MutableComboBoxModel<T> {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Longer names are indexed by their first characters only, longer filters are checked against the whole name
+     */
+    static final int MAX_INDEXED_LENGTH = 32;
+
+    private final List<Entry<T>> entries = new ArrayList<>();
+    private final Map<Long, Entry<T>> byId = new HashMap<>();
+    private final List<Entry<T>> unindexed = new ArrayList<>();
+    private Node<T> root = new Node<>();
+    private String filter = "";
+    @Nullable
+    private List<Entry<T>> visible;
+    private Object selected;
+
+    @Override
+    public int getSize() {
+        return visible != null ? visible.size() : entries.size();
+    }
+
+    @Override
+    public T getElementAt(int index) {
+        return (visible != null ? visible : entries).get(index).item;
+    }
+
+    @Override
+    public Object getSelectedItem() {
+        return selected;
+    }
+
+    @Override
+    public void setSelectedItem(Object item) {
+        if (item != selected) {
+            selected = item;
+            fireContentsChanged(this, -1, -1);
+        }
+    }
+
+    /**
+     * @return item with given ObjectID, the first one if there are several
+     */
+    @Nullable
+    T find(long objectId) {
+        var entry = byId.get(objectId);
+        return entry == null ? null : entry.item;
+    }
+
+    String getFilter() {
+        return filter;
+    }
+
+    /**
+     * Shows only items with a word of the name starting with {@code text}, ignoring case; empty text shows all.
+     */
+    void setFilter(String text) {
+        String normalized = text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+        if (normalized.equals(filter)) {
+            return;
+        }
+        int oldSize = getSize();
+        filter = normalized;
+        refresh(oldSize);
+    }
+
+    /**
+     * Replaces all items, keeping the model, its listeners and the filter.
+     */
+    void setItems(Collection<? extends T> items) {
+        int oldSize = getSize();
+        entries.clear();
+        byId.clear();
+        unindexed.clear();
+        root = new Node<>();
+        append(items);
+        refresh(oldSize);
+    }
+
+    /**
+     * Appends items, e.g. the next page of results.
+     */
+    void addAll(Collection<? extends T> items) {
+        int start = getSize();
+        append(items);
+        if (visible != null) {
+            refresh(start);
+        } else if (getSize() > start) {
+            fireIntervalAdded(this, start, getSize() - 1);
+        }
+    }
+
+    @Override
+    public void addElement(T item) {
+        addAll(Collections.singletonList(item));
+    }
+
+    /**
+     * @param index position among all items, not only the visible ones
+     */
+    @Override
+    public void insertElementAt(T item, int index) {
+        int oldSize = getSize();
+        var entry = new Entry<>(item, index);
+        entries.add(index, entry);
+        renumber(index + 1);
+        add(entry);
+        if (visible != null) {
+            refresh(oldSize);
+        } else {
+            fireIntervalAdded(this, index, index);
+        }
+    }
+
+    @Override
+    public void removeElement(Object item) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).item == item) {
+                removeEntry(i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param index position among the visible items
+     */
+    @Override
+    public void removeElementAt(int index) {
+        removeEntry(visible != null ? visible.get(index).position : index);
+    }
+
+    void removeAllElements() {
+        setItems(Collections.emptyList());
+    }
+
+    private void append(Collection<? extends T> items) {
+        for (T item : items) {
+            var entry = new Entry<>(item, entries.size());
+            entries.add(entry);
+            add(entry);
+        }
+    }
+
+    private void add(Entry<T> entry) {
+        byId.merge(entry.item.ObjectID, entry, (old, added) -> old.position <= added.position ? old : added);
+        if (entry.item.ObjectID >= 0) {
+            forEachIndexed(entry.item, (node, key) -> node.add(key, 0).entries.add(entry));
+        } else {
+            unindexed.add(entry);
+        }
+    }
+
+    private void removeEntry(int position) {
+        int oldSize = getSize();
+        var entry = entries.remove(position);
+        renumber(position);
+        if (byId.get(entry.item.ObjectID) == entry) {
+            byId.remove(entry.item.ObjectID);
+            for (int i = position; i < entries.size(); i++) {
+                if (entries.get(i).item.ObjectID == entry.item.ObjectID) {
+                    byId.put(entry.item.ObjectID, entries.get(i));
+                    break;
+                }
+            }
+        }
+        if (entry.item.ObjectID >= 0) {
+            forEachIndexed(entry.item, (node, key) -> {
+                var leaf = node.find(key, 0);
+                if (leaf != null) {
+                    leaf.entries.remove(entry);
+                }
+            });
+        } else {
+            unindexed.remove(entry);
+        }
+        if (selected == entry.item) {
+            selected = null;
+        }
+        if (visible != null) {
+            refresh(oldSize);
+        } else {
+            fireIntervalRemoved(this, position, position);
+        }
+    }
+
+    private void renumber(int from) {
+        for (int i = from; i < entries.size(); i++) {
+            entries.get(i).position = i;
+        }
+    }
+
+    private void refresh(int oldSize) {
+        visible = filter.isEmpty() ? null : match(filter);
+        int size = Math.max(oldSize, getSize());
+        if (size > 0) {
+            fireContentsChanged(this, 0, size - 1);
+        }
+    }
+
+    private interface IndexVisitor<T extends RallyObject> {
+        void visit(Node<T> root, String key);
+    }
+
+    /**
+     * Calls {@code visitor} with the name from each word start on, cut to {@link #MAX_INDEXED_LENGTH}.
+     */
+    private void forEachIndexed(T item, IndexVisitor<T> visitor) {
+        if (item.Name == null) {
+            return;
+        }
+        String name = item.Name.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < name.length(); i++) {
+            if (isWordStart(name, i)) {
+                visitor.visit(root, name.substring(i, Math.min(name.length(), i + MAX_INDEXED_LENGTH)));
+            }
+        }
+    }
+
+    private static boolean isWordStart(String name, int index) {
+        return Character.isLetterOrDigit(name.charAt(index))
+                && (index == 0 || !Character.isLetterOrDigit(name.charAt(index - 1)));
+    }
+
+    /**
+     * @return matching entries in model order, with the unindexed ones
+     */
+    private List<Entry<T>> match(String text) {
+        Set<Entry<T>> found = Collections.newSetFromMap(new IdentityHashMap<>());
+        var node = root.find(text.substring(0, Math.min(text.length(), MAX_INDEXED_LENGTH)), 0);
+        if (node != null) {
+            node.collect(found);
+        }
+        if (text.length() > MAX_INDEXED_LENGTH) {
+            found.removeIf(entry -> !startsWord(entry.item.Name.toLowerCase(Locale.ROOT), text));
+        }
+        var result = new ArrayList<>(found);
+        result.addAll(unindexed);
+        result.sort(Comparator.comparingInt(entry -> entry.position));
+        return result;
+    }
+
+    private static boolean startsWord(String name, String text) {
+        for (int i = name.indexOf(text); i >= 0; i = name.indexOf(text, i + 1)) {
+            if (isWordStart(name, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class Entry<T> {
+        final T item;
+        int position;
+
+        Entry(T item, int position) {
+            this.item = item;
+            this.position = position;
+        }
+    }
+
+    private static class Node<T> {
+        private Map<Character, Node<T>> children;
+        final List<Entry<T>> entries = new ArrayList<>(1);
+
+        Node<T> add(String key, int index) {
+            if (index == key.length()) {
+                return this;
+            }
+            if (children == null) {
+                children = new HashMap<>();
+            }
+            return children.computeIfAbsent(key.charAt(index), c -> new Node<>()).add(key, index + 1);
+        }
+
+        @Nullable
+        Node<T> find(String key, int index) {
+            if (index == key.length()) {
+                return this;
+            }
+            var child = children == null ? null : children.get(key.charAt(index));
+            return child == null ? null : child.find(key, index + 1);
+        }
+
+        void collect(Set<Entry<T>> found) {
+            found.addAll(entries);
+            if (children != null) {
+                for (Node<T> child : children.values()) {
+                    child.collect(found);
+                }
+            }
+        }
+    }
+}
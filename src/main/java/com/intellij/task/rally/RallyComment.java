@@ -0,0 +1,31 @@
+package com.intellij.task.rally;
+
+import com.intellij.task.rally.models.ConversationPost;
+import com.intellij.tasks.Comment;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Date;
+
+public class RallyComment extends Comment {
+
+    private final ConversationPost post;
+
+    public RallyComment(ConversationPost post) {
+        this.post = post;
+    }
+
+    @Override
+    public String getText() {
+        return post.Text;
+    }
+
+    @Override
+    public @Nullable String getAuthor() {
+        return post.User == null ? null : post.User._refObjectName;
+    }
+
+    @Override
+    public @Nullable Date getDate() {
+        return post.CreationDate;
+    }
+}
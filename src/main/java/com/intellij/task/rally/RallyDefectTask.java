@@ -13,11 +13,21 @@ import java.util.Date;
 public class RallyDefectTask extends Task {
 
     private Defect defect;
+    private final CommentLoader comments;
     private Icon icon;
 
     public RallyDefectTask(Defect defect)
+    {
+        this(defect, null);
+    }
+
+    /**
+     * @param comments loads the discussion on first request
+     */
+    RallyDefectTask(Defect defect, @Nullable CommentLoader comments)
     {
         this.defect = defect;
+        this.comments = comments;
         icon =  new ImageIcon(this.getClass().getClassLoader().getResource("rally_defect_P3.png"), "Rally Defect Icon");
     }
 
@@ -38,12 +48,12 @@ public class RallyDefectTask extends Task {
 
     @Override
     public @NotNull Comment[] getComments() {
-        return new Comment[0];
+        return comments == null ? new Comment[0] : comments.getComments(defect);
     }
 
     @Override
     public @NotNull Icon getIcon() {
-        return null;
+        return icon;
     }
 
     @Override
@@ -53,12 +63,12 @@ public class RallyDefectTask extends Task {
 
     @Override
     public @Nullable Date getUpdated() {
-        return null;
+        return defect.LastUpdateDate;
     }
 
     @Override
     public @Nullable Date getCreated() {
-        return null;
+        return defect.CreationDate;
     }
 
     @Override
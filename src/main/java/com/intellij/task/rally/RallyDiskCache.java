@@ -0,0 +1,233 @@
+package com.intellij.task.rally;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.task.rally.models.RallyObject;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Versioned binary cache of Rally objects in the IDE system directory, so tasks and editor lists are available
+ * right after startup and when Rally cannot be reached.
+ * <p>
+ * Each list is stored in its own file named after the hash of its key. Records are written field by field
+ * following the public fields of the model class; the layout fingerprint is kept in the header, so files written
+ * for a different model version are ignored instead of being misread. References to other objects keep only
+ * their ObjectID, {@code _ref} and {@code _refObjectName}; fields of other types are not cached.
+ */
+public class RallyDiskCache {
+    private static final Logger LOG = Logger.getInstance("#com.intellij.tasks.rally.RallyDiskCache");
+    private static final int MAGIC = 0x52414c59; // "RALY"
+    private static final int FORMAT_VERSION = 1;
+    private static final Map<Class<?>, Field[]> LAYOUTS = new ConcurrentHashMap<>();
+    private static final Set<Class<?>> VALUE_TYPES = Set.of(long.class, int.class, boolean.class, String.class, Date.class,
+            RallyObject.class);
+
+    private static volatile RallyDiskCache ourInstance;
+
+    private final Path directory;
+
+    public RallyDiskCache(Path directory) {
+        this.directory = directory;
+    }
+
+    public static RallyDiskCache getInstance() {
+        if (ourInstance == null) {
+            synchronized (RallyDiskCache.class) {
+                if (ourInstance == null) {
+                    ourInstance = new RallyDiskCache(Paths.get(PathManager.getSystemPath(), "tasks", "rally"));
+                }
+            }
+        }
+        return ourInstance;
+    }
+
+    /**
+     * Builds cache key out of server URL and object ids, e.g. {@code key(url, "stories", workspace, project, iteration)}.
+     */
+    public static String key(Object... parts) {
+        var key = new StringJoiner("|");
+        for (Object part : parts) {
+            key.add(String.valueOf(part));
+        }
+        return key.toString();
+    }
+
+    public synchronized <T extends RallyObject> void save(String key, Class<T> type, List<T> items) {
+        Path file = file(key);
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(layoutFingerprint(type));
+                out.writeUTF(key);
+                out.writeLong(System.currentTimeMillis());
+                out.writeInt(items.size());
+                for (T item : items) {
+                    writeRecord(out, layout(type), item);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | IllegalAccessException | RuntimeException e) {
+            LOG.warn("Could not save Rally cache " + file, e);
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException deleteError) {
+                    LOG.warn("Could not delete " + temp, deleteError);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return cached items or {@code null} if nothing usable was cached for the key
+     */
+    public synchronized <T extends RallyObject> List<T> load(String key, Class<T> type) {
+        Path file = file(key);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION
+                    || !layoutFingerprint(type).equals(in.readUTF()) || !key.equals(in.readUTF())) {
+                return null;
+            }
+            in.readLong();
+            int size = in.readInt();
+            var items = new ArrayList<T>(size);
+            for (int i = 0; i < size; i++) {
+                items.add(readRecord(in, type));
+            }
+            return items;
+        } catch (IOException | ReflectiveOperationException e) {
+            LOG.warn("Could not read Rally cache " + file, e);
+            return null;
+        }
+    }
+
+    private Path file(String key) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            var name = new StringBuilder();
+            for (byte b : digest) {
+                name.append(String.format("%02x", b));
+            }
+            return directory.resolve(name + ".bin");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Field[] layout(Class<?> type) {
+        return LAYOUTS.computeIfAbsent(type, aClass -> Arrays.stream(aClass.getFields())
+                .filter(field -> !Modifier.isStatic(field.getModifiers()) && VALUE_TYPES.contains(field.getType()))
+                .sorted(Comparator.comparing(Field::getName))
+                .toArray(Field[]::new));
+    }
+
+    private static String layoutFingerprint(Class<?> type) {
+        var fingerprint = new StringJoiner(",", type.getSimpleName() + "(", ")");
+        for (Field field : layout(type)) {
+            fingerprint.add(field.getType().getSimpleName() + " " + field.getName());
+        }
+        return fingerprint.toString();
+    }
+
+    private static void writeRecord(DataOutputStream out, Field[] fields, Object item)
+            throws IOException, IllegalAccessException {
+        for (Field field : fields) {
+            Class<?> fieldType = field.getType();
+            if (fieldType == long.class) {
+                out.writeLong(field.getLong(item));
+            } else if (fieldType == int.class) {
+                out.writeInt(field.getInt(item));
+            } else if (fieldType == boolean.class) {
+                out.writeBoolean(field.getBoolean(item));
+            } else if (fieldType == String.class) {
+                writeString(out, (String) field.get(item));
+            } else if (fieldType == Date.class) {
+                var date = (Date) field.get(item);
+                out.writeLong(date == null ? Long.MIN_VALUE : date.getTime());
+            } else if (fieldType == RallyObject.class) {
+                var reference = (RallyObject) field.get(item);
+                out.writeBoolean(reference != null);
+                if (reference != null) {
+                    out.writeLong(reference.ObjectID);
+                    writeString(out, reference._ref);
+                    writeString(out, reference._refObjectName);
+                }
+            } else {
+                throw new IllegalArgumentException("Unsupported field type: " + field);
+            }
+        }
+    }
+
+    private static <T> T readRecord(DataInputStream in, Class<T> type)
+            throws IOException, ReflectiveOperationException {
+        T item = type.getConstructor().newInstance();
+        for (Field field : layout(type)) {
+            Class<?> fieldType = field.getType();
+            if (fieldType == long.class) {
+                field.setLong(item, in.readLong());
+            } else if (fieldType == int.class) {
+                field.setInt(item, in.readInt());
+            } else if (fieldType == boolean.class) {
+                field.setBoolean(item, in.readBoolean());
+            } else if (fieldType == String.class) {
+                field.set(item, readString(in));
+            } else if (fieldType == Date.class) {
+                long time = in.readLong();
+                field.set(item, time == Long.MIN_VALUE ? null : new Date(time));
+            } else if (fieldType == RallyObject.class) {
+                if (in.readBoolean()) {
+                    var reference = new RallyObject();
+                    reference.ObjectID = in.readLong();
+                    reference._ref = readString(in);
+                    reference._refObjectName = readString(in);
+                    field.set(item, reference);
+                }
+            } else {
+                throw new IllegalArgumentException("Unsupported field type: " + field);
+            }
+        }
+        return item;
+    }
+
+    /**
+     * {@link DataOutputStream#writeUTF(String)} is limited to 64K, which rich text descriptions may exceed.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
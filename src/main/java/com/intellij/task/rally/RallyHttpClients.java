@@ -0,0 +1,253 @@
+package com.intellij.task.rally;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.HttpClient;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide registry of HTTP clients used to talk to Rally, one connection pool per server URL and credentials.
+ * <p>
+ * Repository clones and repositories of different IDE projects configured for the same account share the pool,
+ * so warm TLS connections are reused. A pool is closed when its last owner releases it (credentials changed)
+ * or has been garbage collected (repository removed) and it stayed unused for the idle timeout.
+ * <p>
+ * Limits can be set with {@code -Drally.http.maxTotal}, {@code -Drally.http.maxPerRoute} and
+ * {@code -Drally.http.idleSeconds} or at runtime with {@link #setLimits(int, int)}.
+ */
+public class RallyHttpClients {
+    private static final Logger LOG = Logger.getInstance("#com.intellij.tasks.rally.RallyHttpClients");
+    private static final long EVICTION_PERIOD_SECONDS = 30;
+
+    private static volatile RallyHttpClients ourInstance;
+
+    private final Map<Key, Pool> pools = new HashMap<>();
+    private final long idleMillis;
+    private int maxTotal;
+    private int maxPerRoute;
+
+    RallyHttpClients(int maxTotal, int maxPerRoute, long idleMillis) {
+        this.maxTotal = maxTotal;
+        this.maxPerRoute = maxPerRoute;
+        this.idleMillis = idleMillis;
+    }
+
+    public static RallyHttpClients getInstance() {
+        if (ourInstance == null) {
+            synchronized (RallyHttpClients.class) {
+                if (ourInstance == null) {
+                    var clients = new RallyHttpClients(
+                            Integer.getInteger("rally.http.maxTotal", 20),
+                            Integer.getInteger("rally.http.maxPerRoute", 10),
+                            TimeUnit.SECONDS.toMillis(Integer.getInteger("rally.http.idleSeconds", 60)));
+                    AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(
+                            () -> clients.evictIdle(System.currentTimeMillis()),
+                            EVICTION_PERIOD_SECONDS, EVICTION_PERIOD_SECONDS, TimeUnit.SECONDS);
+                    ourInstance = clients;
+                }
+            }
+        }
+        return ourInstance;
+    }
+
+    /**
+     * Returns the client for given server and credentials, creating its pool if needed, and registers
+     * {@code owner} as its user. The owner is only weakly referenced.
+     */
+    public synchronized HttpClient acquire(Object owner, Key key) {
+        var pool = pools.get(key);
+        if (pool == null) {
+            pool = new Pool(maxTotal, maxPerRoute);
+            pools.put(key, pool);
+        }
+        pool.addOwner(owner);
+        return pool.client;
+    }
+
+    /**
+     * @return limiter shared by all requests to the account, see {@link RallyRateLimiter}
+     */
+    synchronized RallyRateLimiter getLimiter(Key key) {
+        return pool(key).limiter;
+    }
+
+    /**
+     * @return requests of the account currently on the wire by URL, so providers of the same account share them
+     */
+    synchronized Map<String, CompletableFuture<Object>> getInFlight(Key key) {
+        return pool(key).inFlight;
+    }
+
+    private Pool pool(Key key) {
+        var pool = pools.get(key);
+        if (pool == null) {
+            throw new IllegalStateException("Client for " + key + " is not acquired");
+        }
+        return pool;
+    }
+
+    /**
+     * Unregisters {@code owner}, e.g. after its credentials have changed. The pool itself is closed on eviction
+     * once unused, so a quick switch back does not have to reconnect.
+     */
+    public synchronized void release(Object owner, Key key) {
+        var pool = pools.get(key);
+        if (pool != null && pool.removeOwner(owner)) {
+            pool.releasedAt = System.currentTimeMillis();
+        }
+    }
+
+    public synchronized void setLimits(int maxTotal, int maxPerRoute) {
+        this.maxTotal = maxTotal;
+        this.maxPerRoute = maxPerRoute;
+        for (Pool pool : pools.values()) {
+            pool.manager.setMaxTotal(maxTotal);
+            pool.manager.setDefaultMaxPerRoute(maxPerRoute);
+        }
+    }
+
+    /**
+     * Closes idle connections of all pools and closes pools nobody has used for the idle timeout.
+     */
+    synchronized void evictIdle(long now) {
+        var iterator = pools.values().iterator();
+        while (iterator.hasNext()) {
+            var pool = iterator.next();
+            if (pool.removeCollectedOwners()) {
+                pool.releasedAt = now;
+            }
+            if (pool.owners.isEmpty() && now - pool.releasedAt >= idleMillis) {
+                iterator.remove();
+                pool.close();
+            } else {
+                pool.manager.closeExpiredConnections();
+                pool.manager.closeIdleConnections(idleMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    synchronized int size() {
+        return pools.size();
+    }
+
+    /**
+     * Identifies a pool. The password is only kept as a hash.
+     */
+    public static final class Key {
+        private final String url;
+        private final String username;
+        private final String passwordHash;
+
+        public Key(String url, String username, String password) {
+            this.url = url;
+            this.username = username;
+            this.passwordHash = sha256(password);
+        }
+
+        /**
+         * @return digest of the whole key, to tell apart cached data of different accounts without storing
+         * usernames or tokens in cache keys
+         */
+        public String hash() {
+            return sha256(url + "\n" + username + "\n" + passwordHash).substring(0, 16);
+        }
+
+        private static String sha256(String value) {
+            try {
+                var digest = MessageDigest.getInstance("SHA-256")
+                        .digest(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+                var hash = new StringBuilder();
+                for (byte b : digest) {
+                    hash.append(String.format("%02x", b));
+                }
+                return hash.toString();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key that = (Key) o;
+
+            return Objects.equals(url, that.url)
+                    && Objects.equals(username, that.username)
+                    && passwordHash.equals(that.passwordHash);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(url, username, passwordHash);
+        }
+
+        @Override
+        public String toString() {
+            return username + "@" + url;
+        }
+    }
+
+    private static class Pool {
+        final PoolingHttpClientConnectionManager manager;
+        final CloseableHttpClient client;
+        final RallyRateLimiter limiter = new RallyRateLimiter();
+        final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+        final List<WeakReference<Object>> owners = new ArrayList<>();
+        long releasedAt = System.currentTimeMillis();
+
+        Pool(int maxTotal, int maxPerRoute) {
+            manager = new PoolingHttpClientConnectionManager();
+            manager.setMaxTotal(maxTotal);
+            manager.setDefaultMaxPerRoute(maxPerRoute);
+            client = HttpClients.custom()
+                    .setConnectionManager(manager)
+                    .addInterceptorLast((HttpResponseInterceptor) (response, context) ->
+                            RallyRateLimiter.onResponse(response))
+                    .build();
+        }
+
+        void addOwner(Object owner) {
+            for (WeakReference<Object> reference : owners) {
+                if (reference.get() == owner) {
+                    return;
+                }
+            }
+            owners.add(new WeakReference<>(owner));
+        }
+
+        boolean removeOwner(Object owner) {
+            return owners.removeIf(reference -> reference.get() == owner) && owners.isEmpty();
+        }
+
+        boolean removeCollectedOwners() {
+            return owners.removeIf(reference -> reference.get() == null) && owners.isEmpty();
+        }
+
+        void close() {
+            try {
+                client.close();
+            } catch (IOException e) {
+                LOG.warn("Error while closing Rally connection pool", e);
+            }
+        }
+    }
+}
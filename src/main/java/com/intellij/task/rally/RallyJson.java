@@ -0,0 +1,136 @@
+package com.intellij.task.rally;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.intellij.task.rally.models.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared deserialization engine for Rally responses.
+ * <p>
+ * Gson and the reflective adapters of every model are built once. Responses are read with a streaming
+ * {@link JsonReader} straight into model objects, so a result set never exists as a {@code JsonElement} tree.
+ */
+final class RallyJson {
+    private static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(Date.class, new IsoDateTypeAdapter())
+            .create();
+    private static final Map<Class<?>, TypeAdapter<?>> ADAPTERS = new ConcurrentHashMap<>();
+
+    static {
+        adapter(Workspace.class);
+        adapter(Project.class);
+        adapter(Iteration.class);
+        adapter(HierarchicalRequirement.class);
+        adapter(Defect.class);
+        adapter(User.class);
+        adapter(ConversationPost.class);
+    }
+
+    private RallyJson() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> TypeAdapter<T> adapter(Class<T> type) {
+        return (TypeAdapter<T>) ADAPTERS.computeIfAbsent(type, GSON::getAdapter);
+    }
+
+    /**
+     * Reads {@code {"QueryResult": {"TotalResultCount": .., "Results": [..]}}} envelope.
+     *
+     * @param offset position of the first result in the whole result set, see {@link QueryPage#getOffset()}
+     * @throws IOException if Rally reported errors for the query
+     */
+    static <T> QueryPage<T> readQueryResult(Reader reader, Class<T> type, int offset) throws IOException {
+        var adapter = adapter(type);
+        var items = new ArrayList<T>();
+        var errors = new ArrayList<String>();
+        int totalResultCount = 0;
+        try (JsonReader in = new JsonReader(reader)) {
+            in.beginObject();
+            while (in.hasNext()) {
+                if (!"QueryResult".equals(in.nextName())) {
+                    in.skipValue();
+                    continue;
+                }
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "TotalResultCount":
+                            totalResultCount = in.nextInt();
+                            break;
+                        case "Errors":
+                            readStrings(in, errors);
+                            break;
+                        case "Results":
+                            in.beginArray();
+                            while (in.hasNext()) {
+                                items.add(adapter.read(in));
+                            }
+                            in.endArray();
+                            break;
+                        default:
+                            in.skipValue();
+                    }
+                }
+                in.endObject();
+            }
+            in.endObject();
+        }
+        if (!errors.isEmpty()) {
+            throw new IOException(String.join("; ", errors));
+        }
+        return new QueryPage<>(items, offset, totalResultCount);
+    }
+
+    /**
+     * Reads single object response, e.g. {@code {"HierarchicalRequirement": {..}}}.
+     *
+     * @throws IOException if Rally reported errors, e.g. the object doesn't exist anymore
+     */
+    static <T> T readObject(Reader reader, Class<T> type) throws IOException {
+        var adapter = adapter(type);
+        var errors = new ArrayList<String>();
+        T result = null;
+        try (JsonReader in = new JsonReader(reader)) {
+            in.beginObject();
+            while (in.hasNext()) {
+                if ("OperationResult".equals(in.nextName())) {
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        if ("Errors".equals(in.nextName())) {
+                            readStrings(in, errors);
+                        } else {
+                            in.skipValue();
+                        }
+                    }
+                    in.endObject();
+                } else {
+                    result = adapter.read(in);
+                }
+            }
+            in.endObject();
+        }
+        if (!errors.isEmpty()) {
+            throw new IOException(String.join("; ", errors));
+        }
+        return result;
+    }
+
+    private static void readStrings(JsonReader in, List<String> target) throws IOException {
+        in.beginArray();
+        while (in.hasNext()) {
+            target.add(in.nextString());
+        }
+        in.endArray();
+    }
+}
@@ -0,0 +1,123 @@
+package com.intellij.task.rally;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.ServiceManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of Rally requests by object type and of cache hits, exported via JMX by {@link RallyMetricsExporter} and
+ * shown by {@link ShowRallyMetricsAction}.
+ */
+public class RallyMetrics implements RallyMetricsMXBean {
+    public static final String OBJECT_NAME = "com.intellij.task.rally:type=RallyMetrics";
+
+    private static volatile RallyMetrics ourInstance;
+
+    private final Map<String, QueryStats> queries = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> cacheHits = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> cacheMisses = new ConcurrentHashMap<>();
+
+    public static RallyMetrics getInstance() {
+        if (ourInstance == null) {
+            synchronized (RallyMetrics.class) {
+                if (ourInstance == null) {
+                    ourInstance = new RallyMetrics();
+                }
+            }
+            if (ApplicationManager.getApplication() != null) {
+                // exports the counters via JMX until the plugin is unloaded
+                ServiceManager.getService(RallyMetricsExporter.class);
+            }
+        }
+        return ourInstance;
+    }
+
+    /**
+     * @return object type requested by WSAPI URL, e.g. "hierarchicalrequirement" for
+     * {@code /hierarchicalrequirement.js?query=...} or {@code /hierarchicalrequirement/1234}
+     */
+    static String queryType(String url) {
+        int start = url.startsWith("/") ? 1 : 0;
+        int end = start;
+        while (end < url.length() && Character.isLetterOrDigit(url.charAt(end))) {
+            end++;
+        }
+        return url.substring(start, end).toLowerCase(Locale.ROOT);
+    }
+
+    QueryStats query(String type) {
+        return queries.computeIfAbsent(type, QueryStats::new);
+    }
+
+    void recordCache(String cache, boolean hit) {
+        (hit ? cacheHits : cacheMisses).computeIfAbsent(cache, name -> new AtomicLong()).incrementAndGet();
+    }
+
+    @Override
+    public List<QueryStats> getQueries() {
+        var stats = new ArrayList<>(queries.values());
+        stats.sort((a, b) -> a.getType().compareTo(b.getType()));
+        return stats;
+    }
+
+    @Override
+    public Map<String, Long> getCacheHits() {
+        return snapshot(cacheHits);
+    }
+
+    @Override
+    public Map<String, Long> getCacheMisses() {
+        return snapshot(cacheMisses);
+    }
+
+    /**
+     * Lists values one per line as key/value pairs, the report is shown in a dialog with a proportional font.
+     */
+    @Override
+    public String getReport() {
+        var report = new StringBuilder();
+        for (QueryStats stats : getQueries()) {
+            long count = Math.max(1, stats.getCount());
+            report.append(stats.getType()).append('\n');
+            report.append(String.format(Locale.ROOT, "    requests: %d, errors: %d%n", stats.getCount(), stats.getErrors()));
+            report.append(String.format(Locale.ROOT, "    latency p50 / p95 / p99: %.1f / %.1f / %.1f ms%n",
+                    stats.getLatencyP50Millis(), stats.getLatencyP95Millis(), stats.getLatencyP99Millis()));
+            report.append(String.format(Locale.ROOT, "    average response: %d bytes, %d results%n",
+                    stats.getResponseBytes() / count, stats.getResults() / count));
+            report.append(String.format(Locale.ROOT, "    average parsing: %.1f ms%n",
+                    stats.getDeserializationMillis() / count));
+        }
+        var hits = getCacheHits();
+        var misses = getCacheMisses();
+        var caches = new TreeMap<String, Long>(hits);
+        misses.keySet().forEach(cache -> caches.putIfAbsent(cache, 0L));
+        if (!caches.isEmpty()) {
+            report.append(report.length() > 0 ? "\n" : "").append("caches\n");
+            for (String cache : caches.keySet()) {
+                report.append(String.format(Locale.ROOT, "    %s: %d hits, %d misses%n",
+                        cache, hits.getOrDefault(cache, 0L), misses.getOrDefault(cache, 0L)));
+            }
+        }
+        return report.toString();
+    }
+
+    @Override
+    public void reset() {
+        queries.values().forEach(QueryStats::reset);
+        cacheHits.clear();
+        cacheMisses.clear();
+    }
+
+    private static Map<String, Long> snapshot(Map<String, AtomicLong> counters) {
+        var snapshot = new TreeMap<String, Long>();
+        counters.forEach((name, counter) -> snapshot.put(name, counter.get()));
+        return snapshot;
+    }
+}
@@ -0,0 +1,45 @@
+package com.intellij.task.rally;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Application service exporting {@link RallyMetrics} via JMX while the plugin is loaded. The MBean is unregistered
+ * on dispose, so the platform MBean server doesn't keep the plugin's classloader after a dynamic unload.
+ */
+public class RallyMetricsExporter implements Disposable {
+    private static final Logger LOG = Logger.getInstance("#com.intellij.tasks.rally.RallyMetricsExporter");
+
+    private ObjectName name;
+
+    public RallyMetricsExporter() {
+        this(RallyMetrics.getInstance());
+    }
+
+    RallyMetricsExporter(RallyMetrics metrics) {
+        try {
+            var objectName = new ObjectName(RallyMetrics.OBJECT_NAME);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, objectName);
+            name = objectName;
+        } catch (JMException e) {
+            LOG.warn("Could not register Rally metrics MBean", e);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        if (name == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            LOG.warn("Could not unregister Rally metrics MBean", e);
+        }
+        name = null;
+    }
+}
@@ -0,0 +1,26 @@
+package com.intellij.task.rally;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JMX view of {@link RallyMetrics}, registered as {@value RallyMetrics#OBJECT_NAME}.
+ */
+public interface RallyMetricsMXBean {
+
+    List<QueryStats> getQueries();
+
+    /**
+     * @return hits by cache name
+     */
+    Map<String, Long> getCacheHits();
+
+    /**
+     * @return misses by cache name
+     */
+    Map<String, Long> getCacheMisses();
+
+    String getReport();
+
+    void reset();
+}
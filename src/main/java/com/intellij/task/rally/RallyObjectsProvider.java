@@ -1,72 +1,184 @@
 package com.intellij.task.rally;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonArray;
-import com.google.gson.reflect.TypeToken;
-import com.google.gson.typeadapters.RuntimeTypeAdapterFactory;
 import com.intellij.task.rally.models.*;
 import com.rallydev.rest.RallyRestApi;
+import com.rallydev.rest.request.GetRequest;
+import com.rallydev.rest.util.Fetch;
 import com.rallydev.rest.util.QueryFilter;
+import org.jetbrains.annotations.Nullable;
 import org.sbelei.rally.domain.constants.DefectState;
+import org.sbelei.rally.domain.constants.FetchProfile;
+import org.sbelei.rally.domain.constants.StoryState;
 import org.sbelei.rally.helpers.QueryFilterBuilder;
 import org.sbelei.rally.helpers.QueryRequestDecorator;
 
 import java.io.IOException;
-import java.lang.reflect.Type;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.function.ToIntFunction;
 
 import static org.sbelei.rally.helpers.FilterHelper.*;
 
 public class RallyObjectsProvider {
+    /**
+     * Rally refuses page sizes above 2000, but smaller pages let us stop earlier once enough tasks are fetched.
+     */
+    public static final int MAX_PAGE_SIZE = 200;
+    /**
+     * ObjectID-only responses are tiny, so they are fetched in the largest pages Rally allows.
+     */
+    public static final int MAX_ID_PAGE_SIZE = 2000;
+    public static final String RANK_ORDER = "DragAndDropRank";
+    /**
+     * Longest "or"-ed filter of a batch lookup, keeps encoded URLs well under the 8k servers usually accept.
+     */
+    public static final int MAX_FILTER_LENGTH = 2000;
+    /**
+     * Descriptions are shown one at a time, a few recent ones are enough to flip between tasks.
+     */
+    public static final int MAX_DESCRIPTIONS = 100;
+    /**
+     * Discussions are fetched for whole pages of tasks, so a few pages are kept.
+     */
+    public static final int MAX_DISCUSSIONS = 500;
+
     private RallyRestApi restApi;
+    private final Map<String, ArtifactSnapshot<?>> snapshots = new ConcurrentHashMap<>();
+    private final CurrentIterationCache currentIterations = new CurrentIterationCache();
+    private final FormattedIdIndex formattedIds = new FormattedIdIndex();
+    private volatile User currentUser;
+    private final DetailCache<String> descriptions = new DetailCache<>(MAX_DESCRIPTIONS);
+    private final DetailCache<List<ConversationPost>> discussions = new DetailCache<>(MAX_DISCUSSIONS);
+
+    private final Executor chunkExecutor;
+    private final RallyRateLimiter limiter;
+    private final Map<String, CompletableFuture<Object>> inFlight;
+    private final RallyMetrics metrics = RallyMetrics.getInstance();
 
     public RallyObjectsProvider(RallyRestApi restApi) {
+        this(restApi, Runnable::run, new RallyRateLimiter(), new ConcurrentHashMap<>());
+    }
+
+    /**
+     * @param chunkExecutor runs chunks of batch lookups in parallel
+     * @param limiter       paces and retries requests, shared by providers of the same account
+     * @param inFlight      requests currently on the wire by URL, shared by providers of the same account, so
+     *                      concurrent callers asking for the same data share one of them
+     */
+    RallyObjectsProvider(RallyRestApi restApi, Executor chunkExecutor, RallyRateLimiter limiter,
+                         Map<String, CompletableFuture<Object>> inFlight) {
         this.restApi = restApi;
+        this.chunkExecutor = chunkExecutor;
+        this.limiter = limiter;
+        this.inFlight = inFlight;
     }
 
     public List<Workspace> getWorkspaces() throws IOException {
         QueryRequestDecorator request = new QueryRequestDecorator(org.sbelei.rally.domain.constants.Type.WORKSPACE);
-        var apiRequest =  request.getRequest();
-        var response = restApi.query(apiRequest);
-        return deserializeWorkspaces(response.getResults());
+        request.setFetch(FetchProfiles.of(Workspace.class, FetchProfile.LIST));
+        return queryPage(request, 0, 0, Workspace.class).getItems();
     }
 
     public List<Project> getProjects(long workspaceId) throws IOException {
         QueryRequestDecorator request = new QueryRequestDecorator(org.sbelei.rally.domain.constants.Type.PROJECT);
+        request.setFetch(FetchProfiles.of(Project.class, FetchProfile.LIST));
         request.setWorkspace(String.valueOf(workspaceId));
-        var apiRequest =  request.getRequest();
-        var response = restApi.query(apiRequest);
-        return deserializeProjects(response.getResults());
+        return queryPage(request, 0, 0, Project.class).getItems();
+    }
+
+    /**
+     * Fetches projects ordered by name page by page, so large subscriptions can be browsed without loading
+     * all of them.
+     *
+     * @param nameContains only projects whose name contains this text, {@code null} or blank for all
+     * @param offset       0-based index of the first project to return, see {@link QueryPage#getNextOffset()}
+     * @param max          maximum number of projects to return, values less or equal to 0 mean "all of them"
+     */
+    public QueryPage<Project> getProjects(long workspaceId, @Nullable String nameContains, int offset, int max)
+            throws IOException
+    {
+        var filters = new QueryFilterBuilder();
+        filters.add(byNameContains(nameContains));
+        return queryProjects(workspaceId, filters, offset, max);
+    }
+
+    /**
+     * Same as {@link #getProjects(long, String, int, int)} but walks the project hierarchy one level at a time.
+     *
+     * @param parentId parent project, 0 for the top level projects
+     */
+    public QueryPage<Project> getChildProjects(long workspaceId, long parentId, int offset, int max)
+            throws IOException
+    {
+        var filters = new QueryFilterBuilder();
+        filters.add(byParentId(parentId > 0 ? String.valueOf(parentId) : null));
+        return queryProjects(workspaceId, filters, offset, max);
+    }
+
+    private QueryPage<Project> queryProjects(long workspaceId, QueryFilterBuilder filters, int offset, int max)
+            throws IOException
+    {
+        QueryRequestDecorator request = new QueryRequestDecorator(org.sbelei.rally.domain.constants.Type.PROJECT);
+        request.setFetch(FetchProfiles.of(Project.class, FetchProfile.LIST));
+        request.setWorkspace(String.valueOf(workspaceId));
+        request.andFilter(filters.buildQuery());
+        request.setOrder("Name,ObjectID");
+        return queryPage(request, offset, max, Project.class);
     }
 
     public List<Iteration> getIterations(long workspaceId, long projectId) throws IOException {
         QueryRequestDecorator request = new QueryRequestDecorator(org.sbelei.rally.domain.constants.Type.ITERATION);
+        request.setFetch(FetchProfiles.of(Iteration.class, FetchProfile.LIST));
         request.setWorkspace(String.valueOf(workspaceId));
         var filters = new QueryFilterBuilder();
         filters.add(byProjectId(String.valueOf(projectId)));
         request.andFilter(filters.buildQuery());
-        var apiRequest =  request.getRequest();
-        var response = restApi.query(apiRequest);
-        return deserializeIterations(response.getResults());
+        return queryPage(request, 0, 0, Iteration.class).getItems();
     }
 
+    /**
+     * @return iteration running in the project now, or {@code null}; resolved iteration is cached until it ends
+     */
     public Iteration getCurrentIteration(long workspaceId, long projectId) throws IOException {
+        long now = System.currentTimeMillis();
+        var cached = currentIterations.get(workspaceId, projectId, now);
+        metrics.recordCache("currentIteration", cached != null);
+        if (cached != null) {
+            return cached.iteration;
+        }
+        var iteration = queryCurrentIteration(workspaceId, projectId, new Date(now));
+        currentIterations.put(workspaceId, projectId, iteration, now);
+        return iteration;
+    }
+
+    private Iteration queryCurrentIteration(long workspaceId, long projectId, Date date) throws IOException {
         QueryRequestDecorator request = new QueryRequestDecorator(org.sbelei.rally.domain.constants.Type.ITERATION);
+        request.setFetch(FetchProfiles.of(Iteration.class, FetchProfile.LIST));
         request.setWorkspace(String.valueOf(workspaceId));
         var filters = new QueryFilterBuilder();
         filters.add(byProjectId(String.valueOf(projectId)));
-        var date = new Date();
-        QueryFilter startDateFilter = new QueryFilter("StartDate","<=",queryDate(date));
-        QueryFilter endDateFilter = new QueryFilter("EndDate",">",queryDate(date));
-        startDateFilter.and(endDateFilter);
-        filters.add(startDateFilter);
+        filters.add(new QueryFilter("StartDate", "<=", queryTimestamp(date)));
+        filters.add(new QueryFilter("EndDate", ">", queryTimestamp(date)));
         request.andFilter(filters.buildQuery());
-        var apiRequest =  request.getRequest();
-        var response = restApi.query(apiRequest);
-        var iterations =  deserializeIterations(response.getResults());
+        var iterations = queryPage(request, 0, 1, Iteration.class).getItems();
         if ((iterations == null) || (iterations.size()<1)){
             return null;
         } else {
@@ -76,84 +188,627 @@ public class RallyObjectsProvider {
 
     public List<HierarchicalRequirement> getStories(long workspaceId, long projectId, long iterationId) throws Exception
     {
-        QueryRequestDecorator request = new QueryRequestDecorator(org.sbelei.rally.domain.constants.Type.STORY);
-        request.setWorkspace(String.valueOf(workspaceId));
-        var filters = new QueryFilterBuilder();
-        filters.add(byProjectId(String.valueOf(projectId)));
-        filters.add(byIterationId(iterationIdToString(workspaceId, projectId, iterationId)));
-        request.andFilter(filters.buildQuery());
-        var apiRequest =  request.getRequest();
-        var response = restApi.query(apiRequest);
-        return deserializeStories(response.getResults());
+        return getStories(workspaceId, projectId, iterationId, TaskFilter.ALL, 0, 0, 0).getItems();
+    }
+
+    /**
+     * Fetches stories of the iteration ordered by rank, page by page, until {@code max} of them are materialized.
+     *
+     * @param offset 0-based index of the first story to return, see {@link QueryPage#getNextOffset()}
+     * @param max    maximum number of stories to return, values less or equal to 0 mean "all of them"
+     * @param since  if positive, only stories updated after this timestamp are returned
+     */
+    public QueryPage<HierarchicalRequirement> getStories(long workspaceId, long projectId, long iterationId,
+                                                         TaskFilter filter, int offset, int max, long since)
+            throws Exception
+    {
+        var request = artifactRequest(org.sbelei.rally.domain.constants.Type.STORY, HierarchicalRequirement.class,
+                workspaceId, storiesScope(workspaceId, projectId, iterationId, false, filter));
+        request.andFilter(updatedSince(since));
+        return queryPage(request, offset, max, HierarchicalRequirement.class);
+    }
+
+    /**
+     * Returns all stories of the iteration ordered by rank, like {@link #getStories(long, long, long)}, but keeps them
+     * in a snapshot and on subsequent calls only fetches the stories updated since and the ObjectIDs to detect removals.
+     */
+    public List<HierarchicalRequirement> syncStories(long workspaceId, long projectId, long iterationId,
+                                                     TaskFilter filter) throws Exception
+    {
+        return sync(org.sbelei.rally.domain.constants.Type.STORY, HierarchicalRequirement.class,
+                workspaceId, storiesScope(workspaceId, projectId, iterationId, false, filter));
+    }
+
+    /**
+     * @return whether both stories and defects of the iteration are kept in snapshots, so syncing them only fetches
+     * what has changed
+     */
+    public boolean isSynced(long workspaceId, long projectId, long iterationId, TaskFilter filter) throws Exception
+    {
+        return snapshots.containsKey(snapshotKey(org.sbelei.rally.domain.constants.Type.STORY, workspaceId,
+                storiesScope(workspaceId, projectId, iterationId, false, filter)))
+                && snapshots.containsKey(snapshotKey(org.sbelei.rally.domain.constants.Type.DEFECT, workspaceId,
+                defectsScope(workspaceId, projectId, iterationId, false, filter)));
+    }
+
+    /**
+     * Seeds the snapshot used by {@link #syncStories(long, long, long, TaskFilter)} with previously saved stories,
+     * so the next sync only fetches what has changed since then.
+     */
+    public void restoreStories(long workspaceId, long projectId, long iterationId, TaskFilter filter,
+                               List<HierarchicalRequirement> stories) throws Exception
+    {
+        restore(org.sbelei.rally.domain.constants.Type.STORY, workspaceId,
+                storiesScope(workspaceId, projectId, iterationId, false, filter), stories);
     }
 
     public List<Defect> getDefects(long workspaceId, long projectId, long iterationId) throws Exception
     {
-        QueryRequestDecorator request = new QueryRequestDecorator(org.sbelei.rally.domain.constants.Type.DEFECT);
-        request.setWorkspace(String.valueOf(workspaceId));
-        var filters = new QueryFilterBuilder();
-        filters.add(byProjectId(String.valueOf(projectId)));
-        filters.add(byIterationId(iterationIdToString(workspaceId, projectId, iterationId)));
-        filters.add(includeByStates(DefectState.Submitted, DefectState.Open, DefectState.Reopened));
-        request.andFilter(filters.buildQuery());
-        var apiRequest =  request.getRequest();
-        var response = restApi.query(apiRequest);
-        return deserializeDefects(response.getResults());
+        return getDefects(workspaceId, projectId, iterationId, TaskFilter.ALL, 0, 0, 0).getItems();
     }
 
-    private List<Workspace> deserializeWorkspaces(JsonArray response)
+    /**
+     * Same as {@link #getStories(long, long, long, TaskFilter, int, int, long)} but for defects.
+     */
+    public QueryPage<Defect> getDefects(long workspaceId, long projectId, long iterationId,
+                                        TaskFilter filter, int offset, int max, long since) throws Exception
     {
-        RuntimeTypeAdapterFactory<RallyObject> rallyAdapterFactory = RuntimeTypeAdapterFactory
-                .of(RallyObject.class, "_type")
-                .registerSubtype(Workspace.class, "Workspace");
-        Gson gson = new GsonBuilder().registerTypeAdapterFactory(rallyAdapterFactory).create();
-        Type pType = new TypeToken<ArrayList<Workspace>>(){}.getType();
-        List<Workspace> rallyObjects = gson.fromJson(response, pType);
-        return rallyObjects;
+        var request = artifactRequest(org.sbelei.rally.domain.constants.Type.DEFECT, Defect.class,
+                workspaceId, defectsScope(workspaceId, projectId, iterationId, false, filter));
+        request.andFilter(updatedSince(since));
+        return queryPage(request, offset, max, Defect.class);
     }
 
-    private List<Project> deserializeProjects(JsonArray response)
+    /**
+     * Same as {@link #restoreStories(long, long, long, TaskFilter, List)} but for defects.
+     */
+    public void restoreDefects(long workspaceId, long projectId, long iterationId, TaskFilter filter,
+                               List<Defect> defects) throws Exception
     {
-        RuntimeTypeAdapterFactory<RallyObject> rallyAdapterFactory = RuntimeTypeAdapterFactory
-                .of(RallyObject.class, "_type")
-                .registerSubtype(Workspace.class, "Project");
-        Gson gson = new GsonBuilder().registerTypeAdapterFactory(rallyAdapterFactory).create();
-        Type pType = new TypeToken<ArrayList<Project>>(){}.getType();
-        List<Project> rallyObjects = gson.fromJson(response, pType);
-        return rallyObjects;
+        restore(org.sbelei.rally.domain.constants.Type.DEFECT, workspaceId,
+                defectsScope(workspaceId, projectId, iterationId, false, filter), defects);
+    }
+
+    /**
+     * Same as {@link #syncStories(long, long, long, TaskFilter)} but for defects.
+     */
+    public List<Defect> syncDefects(long workspaceId, long projectId, long iterationId,
+                                    TaskFilter filter) throws Exception
+    {
+        return sync(org.sbelei.rally.domain.constants.Type.DEFECT, Defect.class,
+                workspaceId, defectsScope(workspaceId, projectId, iterationId, false, filter));
+    }
+
+    /**
+     * Searches stories by name or FormattedID on the server, see {@link org.sbelei.rally.helpers.FilterHelper#bySearchText(String)}.
+     *
+     * @param allIterations whether to look beyond the given iteration, in the whole project
+     */
+    public QueryPage<HierarchicalRequirement> searchStories(long workspaceId, long projectId, long iterationId,
+                                                            boolean allIterations, TaskFilter filter, String text,
+                                                            int offset, int max) throws Exception
+    {
+        var filters = new QueryFilterBuilder();
+        filters.add(storiesScope(workspaceId, projectId, iterationId, allIterations, filter));
+        filters.add(bySearchText(text));
+        var request = artifactRequest(org.sbelei.rally.domain.constants.Type.STORY, HierarchicalRequirement.class,
+                workspaceId, filters.buildQuery());
+        return queryPage(request, offset, max, HierarchicalRequirement.class);
+    }
+
+    /**
+     * Same as {@link #searchStories(long, long, long, boolean, TaskFilter, String, int, int)} but for defects.
+     */
+    public QueryPage<Defect> searchDefects(long workspaceId, long projectId, long iterationId,
+                                           boolean allIterations, TaskFilter filter, String text,
+                                           int offset, int max) throws Exception
+    {
+        var filters = new QueryFilterBuilder();
+        filters.add(defectsScope(workspaceId, projectId, iterationId, allIterations, filter));
+        filters.add(bySearchText(text));
+        var request = artifactRequest(org.sbelei.rally.domain.constants.Type.DEFECT, Defect.class,
+                workspaceId, filters.buildQuery());
+        return queryPage(request, offset, max, Defect.class);
+    }
+
+    /**
+     * @return user the provider is connected as, looked up once
+     */
+    public User getCurrentUser() throws IOException {
+        var user = currentUser;
+        if (user == null) {
+            user = get("/" + org.sbelei.rally.domain.constants.Type.USER, User.class);
+            if (user == null) {
+                throw new IOException("Could not get current user");
+            }
+            currentUser = user;
+        }
+        return user;
+    }
+
+    private QueryFilter storiesScope(long workspaceId, long projectId, long iterationId, boolean allIterations,
+                                     TaskFilter filter) throws Exception {
+        var filters = new QueryFilterBuilder();
+        filters.add(byProjectId(String.valueOf(projectId)));
+        if (!allIterations) {
+            filters.add(byIterationId(iterationIdToString(workspaceId, projectId, iterationId)));
+        }
+        if (!filter.isIncludeCompleted()) {
+            filters.add(includeByScheduleStates(StoryState.Defined, StoryState.In_Progress));
+        }
+        if (filter.isOnlyMine()) {
+            filters.add(includeByOwnerId(String.valueOf(getCurrentUser().ObjectID)));
+        }
+        return filters.buildQuery();
+    }
+
+    private QueryFilter defectsScope(long workspaceId, long projectId, long iterationId, boolean allIterations,
+                                     TaskFilter filter) throws Exception {
+        var filters = new QueryFilterBuilder();
+        filters.add(byProjectId(String.valueOf(projectId)));
+        if (!allIterations) {
+            filters.add(byIterationId(iterationIdToString(workspaceId, projectId, iterationId)));
+        }
+        if (!filter.isIncludeCompleted()) {
+            filters.add(includeByStates(DefectState.Submitted, DefectState.Open, DefectState.Reopened));
+        }
+        if (filter.isOnlyMine()) {
+            filters.add(includeByOwnerId(String.valueOf(getCurrentUser().ObjectID)));
+        }
+        return filters.buildQuery();
+    }
+
+    private static QueryRequestDecorator artifactRequest(String type, Class<? extends Artifact> modelClass,
+                                                         long workspaceId, QueryFilter scope) {
+        QueryRequestDecorator request = new QueryRequestDecorator(type);
+        request.setFetch(FetchProfiles.of(modelClass, FetchProfile.LIST));
+        request.setWorkspace(String.valueOf(workspaceId));
+        request.setOrder(RANK_ORDER);
+        request.andFilter(scope);
+        return request;
+    }
+
+    /**
+     * Returns the description of a story from a list query, which doesn't carry it, by fetching it alone.
+     * Loaded descriptions are kept until the story changes.
+     */
+    public String getDescription(HierarchicalRequirement story) throws IOException {
+        if (story.Description != null || story._ref == null) {
+            return story.Description;
+        }
+        boolean cached = descriptions.contains(story);
+        metrics.recordCache("description", cached);
+        if (cached) {
+            return descriptions.get(story);
+        }
+        var detail = get(story._ref, HierarchicalRequirement.class, "Description");
+        String description = detail == null ? null : detail.Description;
+        descriptions.put(story, description);
+        return description;
+    }
+
+    /**
+     * Loads descriptions of the stories not loaded yet in a few queries by ObjectID, so each of them doesn't
+     * cost a request of its own.
+     *
+     * @return descriptions by story ObjectID, {@code null} for stories without one
+     */
+    public Map<Long, String> getDescriptions(long workspaceId, Collection<HierarchicalRequirement> stories)
+            throws IOException {
+        var result = new HashMap<Long, String>();
+        var missing = new LinkedHashMap<Long, HierarchicalRequirement>();
+        for (HierarchicalRequirement story : stories) {
+            if (isDescriptionLoaded(story)) {
+                result.put(story.ObjectID, story.Description != null ? story.Description : descriptions.get(story));
+            } else {
+                missing.put(story.ObjectID, story);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+        var filters = new ArrayList<QueryFilter>();
+        for (Long id : missing.keySet()) {
+            filters.add(byObjectId(String.valueOf(id)));
+        }
+        var loaded = new HashMap<Long, String>();
+        for (HierarchicalRequirement detail : join(batchQuery(org.sbelei.rally.domain.constants.Type.STORY,
+                HierarchicalRequirement.class, workspaceId, filters, "ObjectID", "Description"))) {
+            loaded.put(detail.ObjectID, detail.Description);
+        }
+        for (HierarchicalRequirement story : missing.values()) {
+            String description = loaded.get(story.ObjectID);
+            descriptions.put(story, description);
+            result.put(story.ObjectID, description);
+        }
+        return result;
+    }
+
+    /**
+     * @return whether {@link #getDescription} would answer without querying Rally
+     */
+    boolean isDescriptionLoaded(HierarchicalRequirement story) {
+        return story.Description != null || story._ref == null || descriptions.contains(story);
+    }
+
+    /**
+     * Returns discussions of the given stories and defects. Those not cached yet are fetched together in one
+     * query (a few for long lists) on conversation posts, and kept until the artifact changes.
+     *
+     * @return posts ordered by number by artifact ObjectID, empty lists for artifacts without discussion
+     */
+    public Map<Long, List<ConversationPost>> getComments(long workspaceId, Collection<? extends Artifact> artifacts)
+            throws IOException {
+        var result = new HashMap<Long, List<ConversationPost>>();
+        var missing = new LinkedHashMap<Long, Artifact>();
+        for (Artifact artifact : artifacts) {
+            var posts = discussions.get(artifact);
+            metrics.recordCache("discussion", posts != null);
+            if (posts != null) {
+                result.put(artifact.ObjectID, posts);
+            } else {
+                missing.put(artifact.ObjectID, artifact);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+        var filters = new ArrayList<QueryFilter>();
+        for (Long id : missing.keySet()) {
+            filters.add(byArtifactId(String.valueOf(id)));
+        }
+        var posts = new HashMap<Long, List<ConversationPost>>();
+        for (ConversationPost post : join(batchQuery(org.sbelei.rally.domain.constants.Type.CONVERSATION_POST,
+                ConversationPost.class, workspaceId, filters))) {
+            if (post.Artifact != null) {
+                posts.computeIfAbsent(post.Artifact.ObjectID, id -> new ArrayList<>()).add(post);
+            }
+        }
+        for (Artifact artifact : missing.values()) {
+            var discussion = posts.getOrDefault(artifact.ObjectID, new ArrayList<>());
+            discussion.sort(Comparator.comparingInt(post -> post.PostNumber));
+            var unmodifiable = Collections.unmodifiableList(discussion);
+            discussions.put(artifact, unmodifiable);
+            result.put(artifact.ObjectID, unmodifiable);
+        }
+        return result;
+    }
+
+    /**
+     * @return discussion of the artifact if it was loaded before, {@code null} otherwise; never queries Rally
+     */
+    @Nullable
+    List<ConversationPost> getLoadedComments(Artifact artifact) {
+        return discussions.get(artifact);
+    }
+
+    /**
+     * Resolves FormattedID like "US1234" or "DE567". Ids seen in list queries are fetched directly by reference,
+     * others are looked up with a FormattedID query among stories and defects of the workspace.
+     *
+     * @return found story or defect, {@code null} if there is no such artifact
+     */
+    public Artifact findArtifact(long workspaceId, String formattedId) throws IOException {
+        var artifact = formattedIds.getResolved(formattedId);
+        if (artifact != null) {
+            return artifact;
+        }
+        var entry = formattedIds.get(formattedId);
+        if (entry != null) {
+            try {
+                artifact = get(entry.ref, entry.type);
+            } catch (IOException e) {
+                // most likely deleted or moved out of reach, let the query decide
+                formattedIds.remove(formattedId);
+            }
+        }
+        if (artifact == null) {
+            artifact = queryByFormattedId(workspaceId, formattedId);
+        }
+        if (artifact != null) {
+            formattedIds.putResolved(artifact);
+        }
+        return artifact;
+    }
+
+    /**
+     * Looks up many stories and defects by FormattedID in a few queries instead of one per id. Ids are looked up
+     * among defects if they start with "DE" and among stories otherwise, then the missing ones in the other type.
+     * Artifacts are fetched with {@link FetchProfile#LIST} fields.
+     *
+     * @return found artifacts by upper-cased FormattedID, ids not found are absent
+     */
+    public Map<String, Artifact> findArtifacts(long workspaceId, Collection<String> ids) throws IOException {
+        var result = new HashMap<String, Artifact>();
+        var stories = new LinkedHashSet<String>();
+        var defects = new LinkedHashSet<String>();
+        for (String id : ids) {
+            String formattedId = id.toUpperCase(Locale.ROOT);
+            (formattedId.startsWith("DE") ? defects : stories).add(formattedId);
+        }
+        for (int pass = 0; pass < 2 && !(stories.isEmpty() && defects.isEmpty()); pass++) {
+            var storyChunks = batchQuery(org.sbelei.rally.domain.constants.Type.STORY, HierarchicalRequirement.class,
+                    workspaceId, formattedIdFilters(stories));
+            var defectChunks = batchQuery(org.sbelei.rally.domain.constants.Type.DEFECT, Defect.class,
+                    workspaceId, formattedIdFilters(defects));
+            for (Artifact artifact : join(storyChunks)) {
+                result.put(artifact.FormattedID.toUpperCase(Locale.ROOT), artifact);
+            }
+            for (Artifact artifact : join(defectChunks)) {
+                result.put(artifact.FormattedID.toUpperCase(Locale.ROOT), artifact);
+            }
+            // ids not found are tried once more as the other type
+            var missingStories = new LinkedHashSet<>(defects);
+            var missingDefects = new LinkedHashSet<>(stories);
+            missingStories.removeAll(result.keySet());
+            missingDefects.removeAll(result.keySet());
+            stories = missingStories;
+            defects = missingDefects;
+        }
+        return result;
+    }
+
+    /**
+     * Fetches objects of the given type by ObjectID in a few queries instead of one per id.
+     *
+     * @return found objects by ObjectID, ids not found are absent
+     */
+    public <T extends RallyObject> Map<Long, T> findByObjectIds(long workspaceId, String type, Class<T> modelClass,
+                                                                Collection<Long> ids) throws IOException {
+        var filters = new ArrayList<QueryFilter>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            filters.add(byObjectId(String.valueOf(id)));
+        }
+        var result = new HashMap<Long, T>();
+        for (T item : join(batchQuery(type, modelClass, workspaceId, filters))) {
+            result.put(item.ObjectID, item);
+        }
+        return result;
     }
 
-    private List<Iteration> deserializeIterations(JsonArray response)
+    private static List<QueryFilter> formattedIdFilters(Collection<String> formattedIds) {
+        var filters = new ArrayList<QueryFilter>();
+        for (String formattedId : formattedIds) {
+            filters.add(byFormattedId(formattedId));
+        }
+        return filters;
+    }
+
+    /**
+     * Starts one query per chunk of "or"-ed filters on the chunk executor.
+     */
+    private <T extends RallyObject> List<CompletableFuture<List<T>>> batchQuery(String type, Class<T> modelClass,
+                                                                                long workspaceId,
+                                                                                List<QueryFilter> filters) {
+        return batchQuery(type, modelClass, workspaceId, filters, FetchProfiles.of(modelClass, FetchProfile.LIST));
+    }
+
+    private <T extends RallyObject> List<CompletableFuture<List<T>>> batchQuery(String type, Class<T> modelClass,
+                                                                                long workspaceId,
+                                                                                List<QueryFilter> filters,
+                                                                                String... fetch) {
+        var chunks = new ArrayList<CompletableFuture<List<T>>>();
+        for (QueryFilter chunk : QueryFilterBuilder.chunkedOr(filters, MAX_FILTER_LENGTH)) {
+            var request = new QueryRequestDecorator(type);
+            request.setFetch(fetch);
+            request.setWorkspace(String.valueOf(workspaceId));
+            request.andFilter(chunk);
+            var future = new CompletableFuture<List<T>>();
+            chunkExecutor.execute(() -> {
+                try {
+                    future.complete(queryPage(request, 0, 0, modelClass).getItems());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+            chunks.add(future);
+        }
+        return chunks;
+    }
+
+    /**
+     * @return I/O error the failed call has thrown, runtime errors are rethrown as is
+     */
+    private static IOException unwrap(ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+            throw (RuntimeException) e.getCause();
+        }
+        return e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+    }
+
+    private static <T> List<T> join(List<CompletableFuture<List<T>>> chunks) throws IOException {
+        var items = new ArrayList<T>();
+        for (CompletableFuture<List<T>> chunk : chunks) {
+            try {
+                items.addAll(chunk.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for batch lookup");
+            } catch (ExecutionException e) {
+                throw unwrap(e);
+            }
+        }
+        return items;
+    }
+
+    private Artifact queryByFormattedId(long workspaceId, String formattedId) throws IOException {
+        List<Class<? extends Artifact>> types = Arrays.asList(HierarchicalRequirement.class, Defect.class);
+        if (formattedId.toUpperCase(Locale.ROOT).startsWith("DE")) {
+            types = Arrays.asList(Defect.class, HierarchicalRequirement.class);
+        }
+        for (Class<? extends Artifact> type : types) {
+            String rallyType = type == Defect.class
+                    ? org.sbelei.rally.domain.constants.Type.DEFECT
+                    : org.sbelei.rally.domain.constants.Type.STORY;
+            QueryRequestDecorator request = new QueryRequestDecorator(rallyType);
+            request.setFetch(FetchProfiles.of(type, FetchProfile.DETAIL));
+            request.setWorkspace(String.valueOf(workspaceId));
+            request.andFilter(byFormattedId(formattedId));
+            var found = queryPage(request, 0, 1, type).getItems();
+            if (!found.isEmpty()) {
+                return found.get(0);
+            }
+        }
+        return null;
+    }
+
+    private <T extends RallyObject> T get(String ref, Class<T> type) throws IOException {
+        return get(ref, type, FetchProfiles.of(type, FetchProfile.DETAIL));
+    }
+
+    private <T extends RallyObject> T get(String ref, Class<T> type, String... fetch) throws IOException {
+        var request = new GetRequest(ref);
+        request.setFetch(new Fetch(fetch));
+        String url = request.toUrl();
+        return singleFlight(url, () -> fetch(url, body -> RallyJson.readObject(body, type),
+                object -> object == null ? 0 : 1));
+    }
+
+    private static String snapshotKey(String type, long workspaceId, QueryFilter scope) {
+        // resolved scope filter identifies workspace, project and iteration, even if iteration was "current" one
+        return type + ":" + workspaceId + ":" + scope;
+    }
+
+    private <T extends Artifact> void restore(String type, long workspaceId, QueryFilter scope, List<T> artifacts) {
+        snapshots.putIfAbsent(snapshotKey(type, workspaceId, scope), new ArtifactSnapshot<>(artifacts));
+    }
+
+    private <T extends Artifact> List<T> sync(String type, Class<T> modelClass, long workspaceId, QueryFilter scope)
+            throws IOException
     {
-        RuntimeTypeAdapterFactory<RallyObject> rallyAdapterFactory = RuntimeTypeAdapterFactory
-                .of(RallyObject.class, "_type")
-                .registerSubtype(Workspace.class, "Iteration");
-        Gson gson = new GsonBuilder().registerTypeAdapterFactory(rallyAdapterFactory).create();
-        Type pType = new TypeToken<ArrayList<Iteration>>(){}.getType();
-        List<Iteration> rallyObjects = gson.fromJson(response, pType);
-        return rallyObjects;
+        String key = snapshotKey(type, workspaceId, scope);
+        @SuppressWarnings("unchecked")
+        var snapshot = (ArtifactSnapshot<T>) snapshots.get(key);
+        if (snapshot == null) {
+            var all = queryPage(artifactRequest(type, modelClass, workspaceId, scope), 0, 0, modelClass);
+            snapshot = new ArtifactSnapshot<>(all.getItems());
+            snapshots.put(key, snapshot);
+            return snapshot.getItems();
+        }
+        synchronized (snapshot) {
+            var changedRequest = artifactRequest(type, modelClass, workspaceId, scope);
+            var watermark = snapshot.getWatermark();
+            changedRequest.andFilter(updatedSince(watermark == null ? 0 : watermark.getTime()));
+            var changed = queryPage(changedRequest, 0, 0, modelClass).getItems();
+
+            QueryRequestDecorator idsRequest = new QueryRequestDecorator(type);
+            idsRequest.setFetch("ObjectID");
+            idsRequest.setWorkspace(String.valueOf(workspaceId));
+            idsRequest.andFilter(scope);
+            var existing = new HashSet<Long>();
+            for (RallyObject object : queryPage(idsRequest, 0, 0, RallyObject.class, MAX_ID_PAGE_SIZE).getItems()) {
+                existing.add(object.ObjectID);
+            }
+            snapshot.merge(changed, existing);
+        }
+        return snapshot.getItems();
     }
 
-    private List<HierarchicalRequirement> deserializeStories(JsonArray response)
+    private <T> QueryPage<T> queryPage(QueryRequestDecorator request, int offset, int max, Class<T> type)
+            throws IOException
     {
-        RuntimeTypeAdapterFactory<RallyObject> rallyAdapterFactory = RuntimeTypeAdapterFactory
-                .of(RallyObject.class, "_type")
-                .registerSubtype(Workspace.class, "Story");
-        Gson gson = new GsonBuilder().registerTypeAdapterFactory(rallyAdapterFactory).create();
-        Type pType = new TypeToken<ArrayList<HierarchicalRequirement>>(){}.getType();
-        List<HierarchicalRequirement> rallyObjects = gson.fromJson(response, pType);
-        return rallyObjects;
+        return queryPage(request, offset, max, type, MAX_PAGE_SIZE);
     }
 
-    private List<Defect> deserializeDefects(JsonArray response)
+    private <T> QueryPage<T> queryPage(QueryRequestDecorator request, int offset, int max, Class<T> type,
+                                       int maxPageSize) throws IOException
     {
-        RuntimeTypeAdapterFactory<RallyObject> rallyAdapterFactory = RuntimeTypeAdapterFactory
-                .of(RallyObject.class, "_type")
-                .registerSubtype(Workspace.class, "Defect");
-        Gson gson = new GsonBuilder().registerTypeAdapterFactory(rallyAdapterFactory).create();
-        Type pType = new TypeToken<ArrayList<Defect>>(){}.getType();
-        List<Defect> rallyObjects = gson.fromJson(response, pType);
-        return rallyObjects;
+        var items = new ArrayList<T>();
+        int totalResultCount = 0;
+        int position = offset;
+        boolean unlimited = max <= 0;
+        while (unlimited || items.size() < max) {
+            int pageSize = unlimited ? maxPageSize : Math.min(maxPageSize, max - items.size());
+            request.setPage(position + 1, pageSize);
+            var page = query(request, type, position);
+            totalResultCount = page.getTotalResultCount();
+            var results = page.getItems();
+            if (results.isEmpty()) {
+                break;
+            }
+            if (results.size() > pageSize) {
+                results = results.subList(0, pageSize);
+            }
+            items.addAll(results);
+            position += results.size();
+            if (position >= totalResultCount) {
+                break;
+            }
+        }
+        return new QueryPage<>(items, offset, totalResultCount);
+    }
+
+    /**
+     * Executes single request and streams the response body into models, bypassing the {@code JsonObject} tree
+     * {@link RallyRestApi#query} would build.
+     */
+    private <T> QueryPage<T> query(QueryRequestDecorator request, Class<T> type, int offset) throws IOException {
+        String url = request.getRequest().toUrl();
+        return singleFlight(url, () -> {
+            var page = fetch(url, body -> RallyJson.readQueryResult(body, type, offset), p -> p.getItems().size());
+            if (Artifact.class.isAssignableFrom(type)) {
+                for (T item : page.getItems()) {
+                    formattedIds.add((Artifact) item);
+                }
+            }
+            return page;
+        });
+    }
+
+    private interface Parser<T> {
+        T parse(Reader body) throws IOException;
+    }
+
+    /**
+     * Requests {@code url} and parses the response, recording timings and sizes in {@link RallyMetrics}.
+     */
+    private <T> T fetch(String url, Parser<T> parser, ToIntFunction<T> resultCount) throws IOException {
+        var stats = metrics.query(RallyMetrics.queryType(url));
+        try {
+            long start = System.nanoTime();
+            String body = limiter.execute(() -> restApi.getClient().doGet(url));
+            long received = System.nanoTime();
+            T result = parser.parse(new StringReader(body));
+            stats.record(received - start, body.length(), resultCount.applyAsInt(result), System.nanoTime() - received);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            stats.recordError();
+            throw e;
+        }
+    }
+
+    private interface IOCall<T> {
+        T call() throws IOException;
+    }
+
+    /**
+     * Runs {@code call} unless the same request is already in flight, in which case waits for it and returns
+     * its result (or rethrows its error) instead of going to the network again.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T singleFlight(String url, IOCall<T> call) throws IOException {
+        var future = new CompletableFuture<Object>();
+        var running = inFlight.putIfAbsent(url, future);
+        if (running != null) {
+            try {
+                return (T) running.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for " + url);
+            } catch (ExecutionException e) {
+                throw unwrap(e);
+            }
+        }
+        try {
+            T result = call.call();
+            future.complete(result);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(url, future);
+        }
     }
 
     private String iterationIdToString(long workspaceId, long projectId, long iterationId) throws Exception {
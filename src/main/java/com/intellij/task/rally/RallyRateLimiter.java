@@ -0,0 +1,229 @@
+package com.intellij.task.rally;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.utils.DateUtils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Paces requests to one Rally account, so IDEs refreshing at the same time don't get the whole team throttled.
+ * <ul>
+ * <li>a token bucket limits the request rate, allowing short bursts;</li>
+ * <li>throttled requests (HTTP 429 or 503) are retried after a jittered exponential backoff, or after
+ * Retry-After if the server has sent it; when it asks to wait longer than {@link #MAX_RETRY_AFTER} the request
+ * fails instead of holding a thread that long;</li>
+ * <li>the number of concurrent requests adapts: it is halved on throttling and grows by one per "round trip"
+ * while latency stays close to the best seen.</li>
+ * </ul>
+ */
+class RallyRateLimiter {
+    static final double DEFAULT_RATE = 10;
+    static final int DEFAULT_BURST = 20;
+    static final int MIN_CONCURRENCY = 1;
+    static final int INITIAL_CONCURRENCY = 4;
+    static final int MAX_CONCURRENCY = 16;
+    static final int MAX_ATTEMPTS = 4;
+    static final long BASE_BACKOFF = TimeUnit.MILLISECONDS.toNanos(500);
+    static final long MAX_BACKOFF = TimeUnit.SECONDS.toNanos(30);
+    static final long MAX_RETRY_AFTER = 2 * MAX_BACKOFF;
+    /**
+     * Latency this many times the baseline means the server is struggling, the limit stops growing.
+     */
+    private static final double LATENCY_TOLERANCE = 2;
+    /**
+     * Throttled response received by the current thread during the running call
+     */
+    private static final ThreadLocal<Throttled> THROTTLED = new ThreadLocal<>();
+
+    private static class Throttled {
+        /**
+         * Retry-After in nanoseconds, {@code null} if the server didn't send it
+         */
+        final Long retryAfter;
+
+        Throttled(Long retryAfter) {
+            this.retryAfter = retryAfter;
+        }
+    }
+
+    interface Sleeper {
+        void sleep(long nanos) throws InterruptedException;
+    }
+
+    interface Call<T> {
+        T call() throws IOException;
+    }
+
+    private final double rate;
+    private final int burst;
+    private final Sleeper sleeper;
+    private final LongSupplier clock;
+    private final Random random;
+
+    private double tokens;
+    private long refilledAt;
+    private double concurrencyLimit = INITIAL_CONCURRENCY;
+    private int running;
+    private long baselineLatency;
+
+    RallyRateLimiter() {
+        this(DEFAULT_RATE, DEFAULT_BURST, TimeUnit.NANOSECONDS::sleep, System::nanoTime, new Random());
+    }
+
+    RallyRateLimiter(double rate, int burst, Sleeper sleeper, LongSupplier clock, Random random) {
+        this.rate = rate;
+        this.burst = burst;
+        this.sleeper = sleeper;
+        this.clock = clock;
+        this.random = random;
+        tokens = burst;
+        refilledAt = clock.getAsLong();
+    }
+
+    /**
+     * Records a throttled response with its Retry-After, to be called from the HTTP client's response interceptor
+     * on the requesting thread. Only calls failing after such a response are retried.
+     */
+    static void onResponse(HttpResponse response) {
+        int status = response.getStatusLine().getStatusCode();
+        if (status != 429 && status != 503) {
+            return;
+        }
+        Header header = response.getFirstHeader("Retry-After");
+        setThrottled(header == null ? null : header.getValue(), System.currentTimeMillis());
+    }
+
+    /**
+     * @param retryAfter Retry-After header value, seconds or HTTP date, {@code null} if absent
+     */
+    static void setThrottled(String retryAfter, long now) {
+        THROTTLED.set(new Throttled(retryAfter == null ? null : parseRetryAfter(retryAfter, now)));
+    }
+
+    private static Long parseRetryAfter(String value, long now) {
+        try {
+            return TimeUnit.SECONDS.toNanos(Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            Date date = DateUtils.parseDate(value);
+            return date == null ? null : TimeUnit.MILLISECONDS.toNanos(Math.max(0, date.getTime() - now));
+        }
+    }
+
+    /**
+     * Runs {@code call} once allowed by rate and concurrency limits, retrying it while throttled.
+     */
+    <T> T execute(Call<T> call) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            long delay;
+            acquire();
+            long start = clock.getAsLong();
+            try {
+                THROTTLED.remove();
+                T result = call.call();
+                onSuccess(clock.getAsLong() - start);
+                return result;
+            } catch (IOException e) {
+                var throttled = THROTTLED.get();
+                if (throttled == null) {
+                    throw e;
+                }
+                onThrottled();
+                if (attempt >= MAX_ATTEMPTS || throttled.retryAfter != null && throttled.retryAfter > MAX_RETRY_AFTER) {
+                    throw e;
+                }
+                delay = backoff(attempt, throttled.retryAfter);
+            } finally {
+                THROTTLED.remove();
+                release();
+            }
+            sleep(delay);
+        }
+    }
+
+    synchronized int getConcurrencyLimit() {
+        return (int) concurrencyLimit;
+    }
+
+    long backoff(int attempt, Long retryAfter) {
+        long exponential = Math.min(MAX_BACKOFF, BASE_BACKOFF << Math.min(attempt - 1, 16));
+        // jitter spreads retries of the IDEs throttled together
+        long jittered = exponential / 2 + (long) (random.nextDouble() * (exponential / 2));
+        return retryAfter != null ? Math.min(MAX_RETRY_AFTER, Math.max(retryAfter, jittered)) : jittered;
+    }
+
+    private void acquire() throws InterruptedIOException {
+        synchronized (this) {
+            try {
+                while (running >= (int) concurrencyLimit) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for Rally request slot");
+            }
+            running++;
+        }
+        while (true) {
+            long wait;
+            synchronized (this) {
+                refill();
+                if (tokens >= 1) {
+                    tokens--;
+                    return;
+                }
+                wait = (long) ((1 - tokens) / rate * TimeUnit.SECONDS.toNanos(1));
+            }
+            try {
+                sleeper.sleep(wait);
+            } catch (InterruptedException e) {
+                release();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for Rally rate limit");
+            }
+        }
+    }
+
+    private synchronized void release() {
+        running--;
+        notifyAll();
+    }
+
+    private void refill() {
+        long now = clock.getAsLong();
+        tokens = Math.min(burst, tokens + (now - refilledAt) * rate / TimeUnit.SECONDS.toNanos(1));
+        refilledAt = now;
+    }
+
+    private synchronized void onSuccess(long latency) {
+        if (baselineLatency == 0 || latency < baselineLatency) {
+            baselineLatency = latency;
+        } else {
+            // let the baseline follow slowly, so it isn't stuck at one lucky response
+            baselineLatency += (latency - baselineLatency) / 20;
+        }
+        if (latency <= baselineLatency * LATENCY_TOLERANCE) {
+            concurrencyLimit = Math.min(MAX_CONCURRENCY, concurrencyLimit + 1 / concurrencyLimit);
+        }
+    }
+
+    private synchronized void onThrottled() {
+        concurrencyLimit = Math.max(MIN_CONCURRENCY, concurrencyLimit / 2);
+        // stop the burst, requests already queued would be throttled as well
+        tokens = Math.min(tokens, 0);
+    }
+
+    private void sleep(long delay) throws InterruptedIOException {
+        try {
+            sleeper.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while backing off");
+        }
+    }
+}
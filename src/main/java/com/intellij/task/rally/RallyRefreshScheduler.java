@@ -0,0 +1,159 @@
+package com.intellij.task.rally;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Refreshes tasks of one repository in background, so the first popup after a while doesn't wait for Rally.
+ * <ul>
+ * <li>every delay is randomized by {@link #JITTER}, so IDEs of a team started together don't query at once;</li>
+ * <li>while the IDE is not the active application refreshes are skipped and checks get less frequent;</li>
+ * <li>after failed refreshes the delay doubles, up to {@link #MAX_DELAY}.</li>
+ * </ul>
+ * Refreshing stops once the repository is no longer configured or its refresh interval is set to 0, and when
+ * another scheduler of its group starts or the group is stopped, e.g. after the repository has been replaced by
+ * its edited clone. The repository is only weakly referenced, so a removed one doesn't keep refreshing either.
+ */
+class RallyRefreshScheduler {
+    private static final Logger LOG = Logger.getInstance("#com.intellij.tasks.rally.RallyRefreshScheduler");
+    static final double JITTER = 0.2;
+    static final long MAX_DELAY = TimeUnit.MINUTES.toMillis(30);
+    private static final Map<Object, RallyRefreshScheduler> ACTIVE = new ConcurrentHashMap<>();
+
+    interface Refreshable {
+        boolean isConfigured();
+
+        /**
+         * @return minutes between refreshes, 0 to stop refreshing
+         */
+        int getRefreshInterval();
+
+        void refreshInBackground() throws Exception;
+    }
+
+    private final WeakReference<Refreshable> target;
+    private final ScheduledExecutorService timer;
+    private final Executor worker;
+    private final BooleanSupplier active;
+    private final Random random;
+
+    private int failures;
+    private int idleRuns;
+    private ScheduledFuture<?> next;
+    private boolean stopped;
+    private Object group;
+
+    RallyRefreshScheduler(Refreshable target, ScheduledExecutorService timer, Executor worker, BooleanSupplier active,
+                          Random random) {
+        this.target = new WeakReference<>(target);
+        this.timer = timer;
+        this.worker = worker;
+        this.active = active;
+        this.random = random;
+    }
+
+    /**
+     * Starts refreshing {@code target} on {@code worker}, stopping the scheduler started for {@code group} before.
+     */
+    static RallyRefreshScheduler start(Refreshable target, Object group, Executor worker) {
+        var scheduler = new RallyRefreshScheduler(target, AppExecutorUtil.getAppScheduledExecutorService(), worker,
+                () -> ApplicationManager.getApplication().isActive(), new Random());
+        scheduler.register(group);
+        scheduler.start(target.getRefreshInterval());
+        return scheduler;
+    }
+
+    /**
+     * Stops the scheduler running for {@code group}, if any.
+     */
+    static void stop(Object group) {
+        var scheduler = ACTIVE.get(group);
+        if (scheduler != null) {
+            scheduler.stop();
+        }
+    }
+
+    /**
+     * Makes this the only scheduler of {@code group}.
+     */
+    void register(Object group) {
+        synchronized (this) {
+            this.group = group;
+        }
+        var previous = ACTIVE.put(group, this);
+        if (previous != null && previous != this) {
+            previous.stop();
+        }
+    }
+
+    /**
+     * Schedules the first refresh at a random point of the first interval.
+     */
+    synchronized void start(int intervalMinutes) {
+        if (intervalMinutes > 0) {
+            schedule((long) (random.nextDouble() * TimeUnit.MINUTES.toMillis(intervalMinutes)));
+        }
+    }
+
+    synchronized void stop() {
+        stopped = true;
+        if (next != null) {
+            next.cancel(false);
+        }
+        if (group != null) {
+            ACTIVE.remove(group, this);
+        }
+    }
+
+    synchronized boolean isStopped() {
+        return stopped;
+    }
+
+    void run() {
+        var refreshable = target.get();
+        int interval = refreshable == null || !refreshable.isConfigured() ? 0 : refreshable.getRefreshInterval();
+        if (interval <= 0 || isStopped()) {
+            stop();
+            return;
+        }
+        boolean succeeded = true;
+        boolean idle = !active.getAsBoolean();
+        if (!idle) {
+            try {
+                refreshable.refreshInBackground();
+            } catch (Exception e) {
+                LOG.warn("Error while refreshing tasks in background", e);
+                succeeded = false;
+            }
+        }
+        synchronized (this) {
+            idleRuns = idle ? idleRuns + 1 : 0;
+            failures = succeeded ? 0 : failures + 1;
+            if (!stopped) {
+                schedule(nextDelay(TimeUnit.MINUTES.toMillis(interval)));
+            }
+        }
+    }
+
+    synchronized long nextDelay(long interval) {
+        int doublings = Math.min(failures + idleRuns, 16);
+        long delay = Math.max(interval, Math.min(MAX_DELAY, interval << doublings));
+        return (long) (delay * (1 - JITTER + random.nextDouble() * 2 * JITTER));
+    }
+
+    private void schedule(long delay) {
+        // the timer thread is shared by the whole IDE, network calls must not block it
+        next = timer.schedule(() -> worker.execute(this::run), delay, TimeUnit.MILLISECONDS);
+    }
+}
@@ -1,31 +1,68 @@
 package com.intellij.task.rally;
 
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.task.rally.models.Artifact;
+import com.intellij.task.rally.models.Defect;
 import com.intellij.task.rally.models.HierarchicalRequirement;
 import com.intellij.task.rally.models.Iteration;
 import com.intellij.task.rally.models.Project;
+import com.intellij.task.rally.models.RallyObject;
 import com.intellij.task.rally.models.Workspace;
 import com.intellij.tasks.Task;
 import com.intellij.tasks.impl.BaseRepository;
 import com.intellij.tasks.impl.httpclient.NewBaseRepositoryImpl;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.xmlb.annotations.Tag;
 import com.rallydev.rest.RallyRestApi;
-import org.apache.http.client.HttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.sbelei.rally.helpers.FilterHelper;
 
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
 
 @Tag("Rally")
-public class RallyRepository extends NewBaseRepositoryImpl {
+public class RallyRepository extends NewBaseRepositoryImpl implements RallyRefreshScheduler.Refreshable {
     private static final Logger LOG = Logger.getInstance("#com.intellij.tasks.rally.RallyRepository");
     public static final Iteration CURRENT_ITERATION = getCurrentIteration();
     public static final Iteration UNSCHEDULED = getUnscheduledIteration();
+    private static final String STORIES = "stories";
+    private static final String DEFECTS = "defects";
+    /**
+     * Shared by all repositories, so a burst of refreshes can't flood Rally with parallel queries
+     */
+    private static final ExecutorService QUERY_EXECUTOR =
+            AppExecutorUtil.createBoundedApplicationPoolExecutor("Rally Queries", 4);
+    /**
+     * Runs chunks of batch lookups, separate from {@link #QUERY_EXECUTOR} whose tasks may wait for them
+     */
+    private static final ExecutorService LOOKUP_EXECUTOR =
+            AppExecutorUtil.createBoundedApplicationPoolExecutor("Rally Lookups", 4);
+    /**
+     * Runs background refreshes, separate from {@link #QUERY_EXECUTOR} whose tasks they wait for
+     */
+    private static final ExecutorService REFRESH_EXECUTOR =
+            AppExecutorUtil.createBoundedApplicationPoolExecutor("Rally Refresh", 2);
+    private static final IssuesCache ISSUES_CACHE = new IssuesCache();
+    private static final MetadataCache METADATA_CACHE = new MetadataCache();
+    /**
+     * Ids of stories and defects with default prefixes in commit messages and branch names, case-sensitive so words
+     * like "utf8" or "v2" don't turn into Rally queries
+     */
+    private static final Pattern FORMATTED_ID_IN_TEXT = Pattern.compile("\\b(?:US|DE)\\d+\\b");
     private Workspace workspace;
     private Project project;
     private Iteration iteration;
@@ -56,29 +93,49 @@ public class RallyRepository extends NewBaseRepositoryImpl {
 
     private boolean showCompletedTasks;
     private boolean showOnlyMine;
+    private boolean searchAllIterations;
+    private int refreshInterval = 5;
 
-    private RallyRestApi client;
+    private RallyHttpClients.Key clientKey;
     private RallyObjectsProvider rallyProvider;
+    private final AtomicBoolean diskCacheChecked = new AtomicBoolean();
+    private final Map<String, List<?>> savedLists = new ConcurrentHashMap<>();
+    private volatile BuiltTasks lastBuilt;
+    /**
+     * Reloads the task list the IDE has asked for last, into the cache
+     */
+    private volatile RallyCall<Task[]> lastListing;
+    private RallyRefreshScheduler refreshScheduler;
+    /**
+     * Shared with clones, so a repository replaced by its clone on Settings | Apply stops refreshing
+     */
+    private final Object refreshGroup;
 
 
 
     @SuppressWarnings("unused")
     public RallyRepository() {
         super();
+        refreshGroup = new Object();
         setUrl("https://rally1.rallydev.com");
     }
 
     public RallyRepository(RallyRepositoryType type) {
         super(type);
+        refreshGroup = new Object();
         setUrl("https://rally1.rallydev.com");
     }
 
     public RallyRepository(RallyRepository rallyRepository) {
         super(rallyRepository);
+        refreshGroup = rallyRepository.refreshGroup;
         workspace = rallyRepository.workspace;
         project = rallyRepository.project;
         iteration = rallyRepository.iteration;
         showCompletedTasks = rallyRepository.isShowCompletedTasks();
+        showOnlyMine = rallyRepository.isShowOnlyMine();
+        searchAllIterations = rallyRepository.isSearchAllIterations();
+        refreshInterval = rallyRepository.getRefreshInterval();
     }
 
     @Override
@@ -90,6 +147,9 @@ public class RallyRepository extends NewBaseRepositoryImpl {
         RallyRepository that = (RallyRepository) o;
 
         if (showCompletedTasks != that.showCompletedTasks) return false;
+        if (showOnlyMine != that.showOnlyMine) return false;
+        if (searchAllIterations != that.searchAllIterations) return false;
+        if (refreshInterval != that.refreshInterval) return false;
         if (!Objects.equals(workspace, that.workspace)) return false;
         if (!Objects.equals(project, that.project)) return false;
         if (!Objects.equals(iteration, that.iteration)) return false;
@@ -106,13 +166,6 @@ public class RallyRepository extends NewBaseRepositoryImpl {
     }
 
 
-    private HttpClient createHttpClient() {
-        PoolingHttpClientConnectionManager cm = new PoolingHttpClientConnectionManager();
-        cm.setMaxTotal(10);
-        cm.setDefaultMaxPerRoute(10);
-        return HttpClients.custom().setConnectionManager(cm).build();
-    }
-
     @Override
     public boolean isConfigured() {
         return super.isConfigured() && !myUsername.isEmpty() && !myPassword.isEmpty();
@@ -120,34 +173,346 @@ public class RallyRepository extends NewBaseRepositoryImpl {
 
     @Override
     public Task[] getIssues(@Nullable String query, int max, long since) throws Exception {
-        if (rallyProvider == null) {
+        return getIssues(query, 0, max, since, false);
+    }
+
+    @Override
+    public Task[] getIssues(@Nullable String query, int offset, int limit, boolean withClosed) throws Exception {
+        return getIssues(query, offset, limit, 0, withClosed);
+    }
+
+    private Task[] getIssues(@Nullable String query, int offset, int limit, long since, boolean withClosed)
+            throws Exception {
+        var filter = TaskFilter.of(showCompletedTasks || withClosed, showOnlyMine);
+        String key = RallyDiskCache.key(cacheKey("issues", filter), query, offset, limit, since);
+        IssuesCache.Loader loader = () -> loadIssues(query, filter, offset, limit, since);
+        if (query == null || query.trim().isEmpty()) {
+            lastListing = () -> ISSUES_CACHE.refresh(key, loader);
+            scheduleRefresh();
+        }
+        return ISSUES_CACHE.get(key, System.currentTimeMillis(), loader,
+                command -> ApplicationManager.getApplication().executeOnPooledThread(command));
+    }
+
+    /**
+     * Starts background refreshes once the IDE uses the repository, clones made for the settings editor never do.
+     */
+    private synchronized void scheduleRefresh() {
+        if ((refreshScheduler == null || refreshScheduler.isStopped()) && refreshInterval > 0) {
+            refreshScheduler = RallyRefreshScheduler.start(this, refreshGroup, REFRESH_EXECUTOR);
+        }
+    }
+
+    /**
+     * Stops background refreshes of this repository and its clones, e.g. once its settings are being changed.
+     * They start again when the IDE asks the repository in use for tasks.
+     */
+    void stopRefresh() {
+        RallyRefreshScheduler.stop(refreshGroup);
+    }
+
+    /**
+     * Reloads tasks of the configured iteration, see {@link RallyRefreshScheduler}.
+     */
+    @Override
+    public void refreshInBackground() throws Exception {
+        if (!isConfigured() || workspace == null || project == null || iteration == null) {
+            return;
+        }
+        var listing = lastListing;
+        if (listing != null) {
+            listing.call();
+        } else {
             refreshProvider();
+            syncArtifacts(TaskFilter.of(showCompletedTasks, showOnlyMine));
         }
+    }
 
-        Task[] result;
-        var stories = rallyProvider.getStories(workspace.ObjectID, project.ObjectID, iteration.ObjectID);
-        result = new Task[stories.size()];
-        int i = 0;
-        for (HierarchicalRequirement entity : stories) {
-            Task task = new RallyStoryTask(entity);
-            result[i] = task;
-            i++;
+    private Task[] loadIssues(@Nullable String query, TaskFilter filter, int offset, int limit, long since)
+            throws Exception {
+        if (query != null && !query.trim().isEmpty()) {
+            return toTasks(search(query, filter, offset, limit), 0, limit, since);
+        }
+        List<Artifact> artifacts = null;
+        if (diskCacheChecked.compareAndSet(false, true)) {
+            var stories = RallyDiskCache.getInstance().load(cacheKey(STORIES, filter), HierarchicalRequirement.class);
+            var defects = RallyDiskCache.getInstance().load(cacheKey(DEFECTS, filter), Defect.class);
+            if (stories != null && defects != null) {
+                reconcileInBackground(filter, stories, defects);
+                artifacts = mergeByRank(stories, defects);
+            }
+        }
+        if (artifacts == null) {
+            refreshProvider();
+            if (limit > 0 && !rallyProvider.isSynced(workspace.ObjectID, project.ObjectID, iteration.ObjectID, filter)) {
+                // the first full sync may take long, until it's done pages are queried with server-side limits
+                syncInBackground(filter);
+                return toTasks(firstPages(filter, offset, limit, since), 0, limit, 0);
+            }
+            artifacts = syncArtifacts(filter);
+        }
+
+        return toTasks(artifacts, offset, limit, since);
+    }
+
+    private Task[] toTasks(List<Artifact> artifacts, int offset, int limit, long since) {
+        var built = lastBuilt;
+        String pageKey = offset + ":" + limit + ":" + since;
+        if (built != null && built.merged == artifacts && pageKey.equals(built.page)) {
+            return built.tasks;
+        }
+        refreshProvider();
+        var page = new ArrayList<Artifact>();
+        for (Artifact entity : artifacts.subList(Math.min(offset, artifacts.size()), artifacts.size())) {
+            if (limit > 0 && page.size() >= limit) {
+                break;
+            }
+            if (since > 0 && entity.LastUpdateDate != null && entity.LastUpdateDate.getTime() <= since) {
+                continue;
+            }
+            page.add(entity);
         }
 
+        // discussions of the whole page are fetched together
+        var comments = new CommentLoader(rallyProvider, workspace.ObjectID, page);
+        var result = new Task[page.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = createTask(page.get(i), rallyProvider, comments);
+        }
+        preloadDetails(result, comments);
+        if (built != null && built.merged == artifacts) {
+            lastBuilt = new BuiltTasks(built.stories, built.defects, artifacts, pageKey, result);
+        }
         return result;
     }
 
-    private void refreshProvider() {
-        if (rallyProvider == null) {
+    /**
+     * Syncs stories and defects in parallel, after the current iteration, if it's used, is resolved.
+     */
+    private List<Artifact> syncArtifacts(TaskFilter filter) throws Exception {
+        long workspaceId = workspace.ObjectID;
+        long projectId = project.ObjectID;
+        long iterationId = iteration.ObjectID;
+        var provider = rallyProvider;
+        CompletableFuture<?> iterationResolved = iterationId == CURRENT_ITERATION.ObjectID
+                ? async(() -> provider.getCurrentIteration(workspaceId, projectId))
+                : CompletableFuture.completedFuture(null);
+        var stories = iterationResolved.thenCompose(ignored -> async(() -> syncWithDiskCache(STORIES, filter,
+                HierarchicalRequirement.class, () -> provider.syncStories(workspaceId, projectId, iterationId, filter))));
+        var defects = iterationResolved.thenCompose(ignored -> async(() -> syncWithDiskCache(DEFECTS, filter,
+                Defect.class, () -> provider.syncDefects(workspaceId, projectId, iterationId, filter))));
+        try {
+            var storyList = stories.get();
+            var defectList = defects.get();
+            var built = lastBuilt;
+            // snapshots return the same lists while nothing changes, so do the tasks built out of them
+            if (built != null && built.stories == storyList && built.defects == defectList) {
+                return built.merged;
+            }
+            var merged = mergeByRank(storyList, defectList);
+            lastBuilt = new BuiltTasks(storyList, defectList, merged, null, null);
+            return merged;
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * Synced lists and the tasks built out of them by the last refresh
+     */
+    private static class BuiltTasks {
+        final List<?> stories;
+        final List<?> defects;
+        final List<Artifact> merged;
+        final String page;
+        final Task[] tasks;
+
+        BuiltTasks(List<?> stories, List<?> defects, List<Artifact> merged, String page, Task[] tasks) {
+            this.stories = stories;
+            this.defects = defects;
+            this.merged = merged;
+            this.page = page;
+            this.tasks = tasks;
+        }
+    }
+
+    private static Exception unwrap(ExecutionException e) {
+        Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+        return cause instanceof Exception ? (Exception) cause : e;
+    }
+
+    private void syncInBackground(TaskFilter filter) {
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            try {
+                syncArtifacts(filter);
+            } catch (Exception e) {
+                LOG.warn("Could not sync Rally tasks", e);
+            }
+        });
+    }
+
+    /**
+     * Queries stories and defects of the iteration in parallel, each up to the end of the requested page, and
+     * returns the requested page of both merged.
+     */
+    private List<Artifact> firstPages(TaskFilter filter, int offset, int limit, long since) throws Exception {
+        long workspaceId = workspace.ObjectID;
+        long projectId = project.ObjectID;
+        long iterationId = iteration.ObjectID;
+        int max = offset + limit;
+        var provider = rallyProvider;
+        var stories = async(() -> provider.getStories(workspaceId, projectId, iterationId, filter, 0, max, since));
+        var defects = async(() -> provider.getDefects(workspaceId, projectId, iterationId, filter, 0, max, since));
+        return mergePages(stories, defects, offset);
+    }
+
+    /**
+     * Runs the search on the server for stories and defects in parallel. To page the merged list both queries
+     * fetch everything up to the end of the requested page.
+     */
+    private List<Artifact> search(String query, TaskFilter filter, int offset, int limit) throws Exception {
+        refreshProvider();
+        long workspaceId = workspace.ObjectID;
+        long projectId = project.ObjectID;
+        long iterationId = iteration.ObjectID;
+        boolean allIterations = searchAllIterations;
+        int max = limit > 0 ? offset + limit : 0;
+        var provider = rallyProvider;
+        var stories = async(() -> provider.searchStories(workspaceId, projectId, iterationId, allIterations, filter, query, 0, max));
+        var defects = async(() -> provider.searchDefects(workspaceId, projectId, iterationId, allIterations, filter, query, 0, max));
+        return mergePages(stories, defects, offset);
+    }
+
+    private static List<Artifact> mergePages(CompletableFuture<? extends QueryPage<? extends Artifact>> stories,
+                                             CompletableFuture<? extends QueryPage<? extends Artifact>> defects,
+                                             int offset) throws Exception {
+        try {
+            var merged = mergeByRank(stories.get().getItems(), defects.get().getItems());
+            return merged.subList(Math.min(offset, merged.size()), merged.size());
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private <T extends Artifact> List<T> syncWithDiskCache(String kind, TaskFilter filter, Class<T> type,
+                                                           RallyCall<List<T>> sync) throws Exception {
+        String cacheKey = cacheKey(kind, filter);
+        try {
+            var artifacts = sync.call();
+            // snapshot returns the same list until something changes
+            if (savedLists.get(cacheKey) != artifacts) {
+                RallyDiskCache.getInstance().save(cacheKey, type, artifacts);
+                savedLists.put(cacheKey, artifacts);
+            }
+            return artifacts;
+        } catch (IOException e) {
+            var cached = RallyDiskCache.getInstance().load(cacheKey, type);
+            if (cached == null) {
+                throw e;
+            }
+            LOG.warn("Could not reach Rally, showing cached " + kind, e);
+            return cached;
+        }
+    }
+
+    private void reconcileInBackground(TaskFilter filter, List<HierarchicalRequirement> stories, List<Defect> defects) {
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            try {
+                refreshProvider();
+                rallyProvider.restoreStories(workspace.ObjectID, project.ObjectID, iteration.ObjectID, filter, stories);
+                rallyProvider.restoreDefects(workspace.ObjectID, project.ObjectID, iteration.ObjectID, filter, defects);
+                syncArtifacts(filter);
+            } catch (Exception e) {
+                LOG.warn("Could not refresh cached Rally tasks", e);
+            }
+        });
+    }
+
+    private String cacheKey(String kind, TaskFilter filter) {
+        return RallyDiskCache.key(accountCacheKey(), kind, workspace.ObjectID, project.ObjectID, iteration.ObjectID, filter);
+    }
+
+    private static <T> CompletableFuture<T> async(RallyCall<T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return call.call();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, QUERY_EXECUTOR);
+    }
+
+    private static List<Artifact> mergeByRank(List<? extends Artifact> stories, List<? extends Artifact> defects) {
+        var merged = new ArrayList<Artifact>(stories.size() + defects.size());
+        merged.addAll(stories);
+        merged.addAll(defects);
+        // both lists are already ordered, so this is a single merge pass
+        merged.sort(ArtifactSnapshot.BY_RANK);
+        return merged;
+    }
+
+    /**
+     * Loads descriptions and discussions of the tasks while still off the EDT: the IDE reads them on the EDT, e.g.
+     * copies them into its local task when one is opened, and wouldn't notice them arriving later.
+     */
+    private void preloadDetails(Task[] tasks, CommentLoader comments) {
+        var stories = new ArrayList<HierarchicalRequirement>();
+        for (Task task : tasks) {
+            if (task instanceof RallyStoryTask) {
+                stories.add(((RallyStoryTask) task).getStory());
+            }
+        }
+        try {
+            comments.preload();
+            var descriptions = rallyProvider.getDescriptions(workspace.ObjectID, stories);
+            for (Task task : tasks) {
+                if (task instanceof RallyStoryTask) {
+                    var storyTask = (RallyStoryTask) task;
+                    storyTask.setDescription(descriptions.get(storyTask.getStory().ObjectID));
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Error while preloading descriptions and discussions", e);
+        }
+    }
+
+    private static Task createTask(Artifact artifact, RallyObjectsProvider provider, CommentLoader comments) {
+        if (artifact instanceof Defect) {
+            return new RallyDefectTask((Defect) artifact, comments);
+        }
+        return new RallyStoryTask((HierarchicalRequirement) artifact, provider, comments);
+    }
+
+    private interface MetadataCall<T> {
+        List<T> call() throws IOException;
+    }
+
+    private interface RallyCall<T> {
+        T call() throws Exception;
+    }
+
+    /**
+     * (Re)creates the provider when there is none yet or the URL or credentials have changed since,
+     * switching to the shared connection pool of the new account.
+     */
+    private synchronized void refreshProvider() {
+        var key = new RallyHttpClients.Key(getUrl(), myUsername, myPassword);
+        if (rallyProvider == null || !key.equals(clientKey)) {
             try {
                 URI uri = new URI(getUrl());
-                client = new RallyRestApi(
+                var clients = RallyHttpClients.getInstance();
+                if (clientKey != null) {
+                    clients.release(this, clientKey);
+                }
+                var client = new RallyRestApi(
                         uri,
                         myUsername,
                         myPassword,
-                        createHttpClient()
+                        clients.acquire(this, key)
                 );
-                rallyProvider = new RallyObjectsProvider(client);
+                clientKey = key;
+                rallyProvider = new RallyObjectsProvider(client, LOOKUP_EXECUTOR, clients.getLimiter(key),
+                        clients.getInFlight(key));
 
             } catch (URISyntaxException uie) {
                 LOG.error("Wrong URL", uie);
@@ -157,8 +522,32 @@ public class RallyRepository extends NewBaseRepositoryImpl {
 
     @Nullable
     @Override
-    public Task findTask(String id) throws Exception {
-        return null;
+    public Task findTask(@NotNull String id) throws Exception {
+        if (!FilterHelper.FORMATTED_ID.matcher(id).matches()) {
+            return null;
+        }
+        if (!isConfigured() || workspace == null) {
+            return null;
+        }
+        refreshProvider();
+        if (rallyProvider == null) {
+            return null;
+        }
+        var artifact = rallyProvider.findArtifact(workspace.ObjectID, id);
+        if (artifact == null) {
+            return null;
+        }
+        var comments = new CommentLoader(rallyProvider, workspace.ObjectID, List.of(artifact));
+        var task = createTask(artifact, rallyProvider, comments);
+        preloadDetails(new Task[]{task}, comments);
+        return task;
+    }
+
+    @Nullable
+    @Override
+    public String extractId(@NotNull String taskName) {
+        var matcher = FORMATTED_ID_IN_TEXT.matcher(taskName);
+        return matcher.find() ? matcher.group() : null;
     }
 
     @Override
@@ -180,17 +569,30 @@ public class RallyRepository extends NewBaseRepositoryImpl {
     public List<Workspace> fetchWorkspaces() throws IOException {
         refreshProvider();
         try {
-            return rallyProvider.getWorkspaces();
-        } catch (Exception e) {
+            return loadMetadata(workspacesCacheKey(), Workspace.class, () -> rallyProvider.getWorkspaces());
+        } catch (IOException e) {
             LOG.warn("Error while fetching workspaces",e);
             throw e;
         }
     }
 
-    public List<Project> fetchProjects() {
+    /**
+     * Fetches a page of projects of the selected workspace ordered by name, the first page of all projects is also
+     * saved to be shown next time before Rally responds.
+     *
+     * @param nameContains only projects whose name contains this text, {@code null} or blank for all
+     * @return page, or {@code null} if the request has failed
+     */
+    @Nullable
+    public QueryPage<Project> fetchProjects(@Nullable String nameContains, int offset, int max) {
         refreshProvider();
         try {
-            return rallyProvider.getProjects(workspace.ObjectID);
+            long workspaceId = workspace.ObjectID;
+            var page = rallyProvider.getProjects(workspaceId, nameContains, offset, max);
+            if (offset == 0 && (nameContains == null || nameContains.trim().isEmpty())) {
+                RallyDiskCache.getInstance().save(projectsCacheKey(workspaceId), Project.class, page.getItems());
+            }
+            return page;
         } catch (Exception e) {
             LOG.warn("Error while fetching projects",e);
             return null;
@@ -200,13 +602,98 @@ public class RallyRepository extends NewBaseRepositoryImpl {
     public List<Iteration> fetchIterations() {
         refreshProvider();
         try {
-            return rallyProvider.getIterations(workspace.ObjectID, project.ObjectID);
+            long workspaceId = workspace.ObjectID;
+            long projectId = project.ObjectID;
+            return loadMetadata(iterationsCacheKey(workspaceId, projectId), Iteration.class,
+                    () -> rallyProvider.getIterations(workspaceId, projectId));
         } catch (Exception e) {
             LOG.warn("Error while fetching iterations",e);
             return null;
         }
     }
 
+    /**
+     * Loads iterations of the selected project in background, so they are ready once the editor asks for them.
+     */
+    public void prefetchIterations() {
+        if (workspace == null || project == null) {
+            return;
+        }
+        long workspaceId = workspace.ObjectID;
+        long projectId = project.ObjectID;
+        String key = iterationsCacheKey(workspaceId, projectId);
+        if (METADATA_CACHE.get(key, System.currentTimeMillis()) != null) {
+            return;
+        }
+        var provider = rallyProvider;
+        QUERY_EXECUTOR.execute(() -> {
+            try {
+                loadMetadata(key, Iteration.class, () -> provider.getIterations(workspaceId, projectId));
+            } catch (Exception e) {
+                LOG.warn("Error while prefetching iterations", e);
+            }
+        });
+    }
+
+    /**
+     * Forgets workspaces, projects and iterations of this account kept in memory, so next fetches go to Rally.
+     */
+    public void refreshMetadata() {
+        METADATA_CACHE.invalidate(RallyDiskCache.key(accountCacheKey(), ""));
+    }
+
+    private static <T extends RallyObject> List<T> loadMetadata(String key, Class<T> type, MetadataCall<T> fetch) throws IOException {
+        List<T> cached = METADATA_CACHE.get(key, System.currentTimeMillis());
+        RallyMetrics.getInstance().recordCache("metadata", cached != null);
+        if (cached != null) {
+            return cached;
+        }
+        var items = fetch.call();
+        METADATA_CACHE.put(key, items, System.currentTimeMillis());
+        RallyDiskCache.getInstance().save(key, type, items);
+        return items;
+    }
+
+    /*
+    Lists saved by previous fetches, to show something before Rally responds
+     */
+
+    @Nullable
+    public List<Workspace> getCachedWorkspaces() {
+        return RallyDiskCache.getInstance().load(workspacesCacheKey(), Workspace.class);
+    }
+
+    @Nullable
+    public List<Project> getCachedProjects() {
+        return workspace == null ? null
+                : RallyDiskCache.getInstance().load(projectsCacheKey(workspace.ObjectID), Project.class);
+    }
+
+    @Nullable
+    public List<Iteration> getCachedIterations() {
+        return workspace == null || project == null ? null
+                : RallyDiskCache.getInstance().load(iterationsCacheKey(workspace.ObjectID, project.ObjectID), Iteration.class);
+    }
+
+    /**
+     * Server and account the cached data belongs to, so accounts used side by side don't see each other's data
+     */
+    private String accountCacheKey() {
+        return RallyDiskCache.key(getUrl(), new RallyHttpClients.Key(getUrl(), myUsername, myPassword).hash());
+    }
+
+    private String workspacesCacheKey() {
+        return RallyDiskCache.key(accountCacheKey(), "workspaces");
+    }
+
+    private String projectsCacheKey(long workspaceId) {
+        return RallyDiskCache.key(accountCacheKey(), "projects", workspaceId);
+    }
+
+    private String iterationsCacheKey(long workspaceId, long projectId) {
+        return RallyDiskCache.key(accountCacheKey(), "iterations", workspaceId, projectId);
+    }
+
     private static Iteration getCurrentIteration() {
         var iteration = new Iteration();
         iteration.ObjectID = -1;
@@ -237,5 +724,24 @@ public class RallyRepository extends NewBaseRepositoryImpl {
     public void setShowOnlyMine(boolean showOnlyMine) {
         this.showOnlyMine = showOnlyMine;
     }
-}
 
+    public boolean isSearchAllIterations() {
+        return searchAllIterations;
+    }
+
+    public void setSearchAllIterations(boolean searchAllIterations) {
+        this.searchAllIterations = searchAllIterations;
+    }
+
+    /**
+     * @return minutes between background refreshes of tasks, 0 if disabled
+     */
+    @Override
+    public int getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    public void setRefreshInterval(int refreshInterval) {
+        this.refreshInterval = Math.max(0, refreshInterval);
+    }
+}
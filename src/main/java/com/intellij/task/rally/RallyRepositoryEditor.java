@@ -1,15 +1,18 @@
 package com.intellij.task.rally;
 
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.ui.ComboBox;
 import com.intellij.task.rally.models.Iteration;
 import com.intellij.task.rally.models.Project;
+import com.intellij.task.rally.models.RallyObject;
 import com.intellij.task.rally.models.Workspace;
 import com.intellij.tasks.config.BaseRepositoryEditor;
 import com.intellij.tasks.impl.TaskUiUtil;
+import com.intellij.ui.DocumentAdapter;
+import com.intellij.ui.PopupMenuListenerAdapter;
 import com.intellij.ui.SimpleListCellRenderer;
 import com.intellij.ui.components.JBLabel;
-import com.intellij.util.ArrayUtil;
 import com.intellij.util.Consumer;
 import com.intellij.util.ui.FormBuilder;
 import com.intellij.util.ui.UIUtil;
@@ -17,26 +20,55 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.PopupMenuEvent;
+import javax.swing.plaf.basic.ComboPopup;
+import javax.swing.text.JTextComponent;
 import java.awt.event.ItemEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static com.intellij.task.rally.RallyRepository.CURRENT_ITERATION;
 import static com.intellij.task.rally.RallyRepository.UNSCHEDULED;
 
 public class RallyRepositoryEditor extends BaseRepositoryEditor<RallyRepository> {
+    private static final int PROJECTS_PAGE_SIZE = 50;
+    private static final int PROJECT_SEARCH_DELAY = 300;
+    /**
+     * Last item of the project list while Rally has more matching projects. Clicking it or scrolling the popup to
+     * the end loads the next page, merely selecting it, e.g. with arrow keys, doesn't.
+     */
+    private static final Project MORE_PROJECTS = getMoreProjectsItem();
+    private static final String LOAD_MORE_INSTALLED = "Rally.loadMoreInstalled";
 
     private JBLabel myWorkspaceLabel;
     private ComboBox<Workspace> myWorkspaces;
 
     private JBLabel myProjectLabel;
     private ComboBox<Project> myProjects;
+    private RallyComboBoxModel<Project> myProjectsModel;
+    private Timer myProjectSearchTimer;
+    private String myProjectQuery = "";
+    private int myProjectsNextOffset;
+    private int myProjectSearchId;
+    private int myRequestedProjectsOffset = -1;
+    private boolean myUpdatingProjects;
 
     private JBLabel myIterationLabel;
     private ComboBox<Iteration> myIterations;
 
     private JCheckBox myShowCompletedCheckbox;
     private JCheckBox myShowOnlyMineCheckbox;
+    private JCheckBox mySearchAllIterationsCheckbox;
+
+    private JBLabel myRefreshIntervalLabel;
+    private JSpinner myRefreshInterval;
+
+    private boolean myShowingCached;
 
     public RallyRepositoryEditor(com.intellij.openapi.project.Project project, RallyRepository repository, Consumer<RallyRepository> changeListener) {
         super(project, repository, changeListener);
@@ -55,12 +87,13 @@ public class RallyRepositoryEditor extends BaseRepositoryEditor<RallyRepository>
     protected JComponent createCustomPanel() {
         FormBuilder fb = FormBuilder.createFormBuilder();
 
-        myWorkspaces = new ComboBox<>(300);
+        myWorkspaces = new ComboBox<>(new RallyComboBoxModel<>(), 300);
         myWorkspaces.setRenderer(SimpleListCellRenderer.create("Set user and token first", Workspace::toString));
 
         myWorkspaces.addItemListener(e -> {
-            if (e.getStateChange() == ItemEvent.SELECTED) {
-                new FetchProjectsTask().queue();
+            if (e.getStateChange() == ItemEvent.SELECTED && !myShowingCached) {
+                myRepository.setWorkspace((Workspace) e.getItem());
+                loadProjects("", 0, true);
             }
         });
 
@@ -68,20 +101,56 @@ public class RallyRepositoryEditor extends BaseRepositoryEditor<RallyRepository>
         myWorkspaceLabel = new JBLabel("Workspace:", SwingConstants.RIGHT);
         fb.addLabeledComponent(myWorkspaceLabel, myWorkspaces);
 
-        myProjects = new ComboBox<>(300);
-        myProjects.setRenderer(SimpleListCellRenderer.create("Set user and token first", Project::toString));
+        myProjectsModel = new RallyComboBoxModel<>();
+        myProjects = new ComboBox<>(myProjectsModel, 300);
+        myProjects.setEditable(true);
+        myProjects.setRenderer(SimpleListCellRenderer.create("Set user and token first", RallyRepositoryEditor::getProjectText));
         myProjects.addItemListener(e -> {
-            if (e.getStateChange() == ItemEvent.SELECTED) {
+            if (e.getStateChange() != ItemEvent.SELECTED || myShowingCached || myUpdatingProjects
+                    || !(e.getItem() instanceof Project)) {
+                return;
+            }
+            if (e.getItem() != MORE_PROJECTS) {
                 myRepository.setProject((com.intellij.task.rally.models.Project) e.getItem());
                 new FetchIterationsTask().queue();
             }
         });
+        myProjects.addPopupMenuListener(new PopupMenuListenerAdapter() {
+            @Override
+            public void popupMenuWillBecomeVisible(PopupMenuEvent e) {
+                installLoadMoreListeners();
+            }
+
+            @Override
+            public void popupMenuWillBecomeInvisible(PopupMenuEvent e) {
+                if (myProjects.getSelectedItem() == MORE_PROJECTS) {
+                    myProjectsModel.setSelectedItem(myRepository.getProject());
+                }
+            }
+        });
+        // type-ahead: projects loaded so far are filtered right away, Rally is searched once the user stops typing
+        myProjectSearchTimer = new Timer(PROJECT_SEARCH_DELAY, e -> loadProjects(getProjectEditor().getText().trim(), 0, false));
+        myProjectSearchTimer.setRepeats(false);
+        getProjectEditor().getDocument().addDocumentListener(new DocumentAdapter() {
+            @Override
+            protected void textChanged(@NotNull DocumentEvent e) {
+                var selected = myProjects.getSelectedItem();
+                String text = getProjectEditor().getText();
+                if (!myShowingCached && !myUpdatingProjects && (selected == null || !text.equals(selected.toString()))) {
+                    myProjectsModel.setFilter(text);
+                    if (myProjects.isShowing()) {
+                        myProjects.showPopup();
+                    }
+                    myProjectSearchTimer.restart();
+                }
+            }
+        });
 
         installListener(myProjects);
         myProjectLabel = new JBLabel("Project:", SwingConstants.RIGHT);
         fb.addLabeledComponent(myProjectLabel, myProjects);
 
-        myIterations = new ComboBox<>(300);
+        myIterations = new ComboBox<>(new RallyComboBoxModel<>(), 300);
         myIterations.setRenderer(SimpleListCellRenderer.create("Set user and token first", Iteration::toString));
         myIterations.addItemListener(e -> {
             if (e.getStateChange() == ItemEvent.SELECTED) {
@@ -102,84 +171,292 @@ public class RallyRepositoryEditor extends BaseRepositoryEditor<RallyRepository>
         fb.addComponent(myShowOnlyMineCheckbox);
         installListener(myShowOnlyMineCheckbox);
 
+        mySearchAllIterationsCheckbox = new JCheckBox("Search in all iterations");
+        mySearchAllIterationsCheckbox.setSelected(myRepository.isSearchAllIterations());
+        fb.addComponent(mySearchAllIterationsCheckbox);
+        installListener(mySearchAllIterationsCheckbox);
+
+        myRefreshInterval = new JSpinner(new SpinnerNumberModel(myRepository.getRefreshInterval(), 0, 120, 1));
+        myRefreshInterval.setToolTipText("Minutes between background refreshes of tasks, 0 to disable");
+        installListener(myRefreshInterval);
+        myRefreshIntervalLabel = new JBLabel("Refresh every (min):", SwingConstants.RIGHT);
+        fb.addLabeledComponent(myRefreshIntervalLabel, myRefreshInterval);
+
         return fb.getPanel();
     }
 
+    private JTextComponent getProjectEditor() {
+        return (JTextComponent) myProjects.getEditor().getEditorComponent();
+    }
+
+    private static String getProjectText(Project project) {
+        if (project == MORE_PROJECTS || project.Parent == null || project.Parent._refObjectName == null) {
+            return project.toString();
+        }
+        // names repeat across a large subscription, the parent tells them apart
+        return project + " (" + project.Parent._refObjectName + ")";
+    }
+
+    /**
+     * Loads the next page of projects once "More projects..." is clicked or the popup list is scrolled to its end.
+     * The popup is created by the combo box UI, so the listeners are added when it's shown.
+     */
+    private void installLoadMoreListeners() {
+        var popup = myProjects.getUI().getAccessibleChild(myProjects, 0);
+        if (!(popup instanceof ComboPopup)) {
+            return;
+        }
+        var list = ((ComboPopup) popup).getList();
+        if (list.getClientProperty(LOAD_MORE_INSTALLED) != null) {
+            return;
+        }
+        list.putClientProperty(LOAD_MORE_INSTALLED, Boolean.TRUE);
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                int index = list.locationToIndex(e.getPoint());
+                if (index >= 0 && list.getModel().getElementAt(index) == MORE_PROJECTS) {
+                    loadMoreProjects();
+                }
+            }
+        });
+        var scrollPane = (JScrollPane) SwingUtilities.getAncestorOfClass(JScrollPane.class, list);
+        if (scrollPane != null) {
+            var scrolled = scrollPane.getVerticalScrollBar().getModel();
+            scrolled.addChangeListener(e -> {
+                if (!scrolled.getValueIsAdjusting() && scrolled.getMaximum() > scrolled.getExtent()
+                        && scrolled.getValue() + scrolled.getExtent() >= scrolled.getMaximum()) {
+                    loadMoreProjects();
+                }
+            });
+        }
+    }
+
+    private void loadMoreProjects() {
+        if (myProjectsModel.find(MORE_PROJECTS.ObjectID) == null || myRequestedProjectsOffset == myProjectsNextOffset) {
+            return;
+        }
+        myRequestedProjectsOffset = myProjectsNextOffset;
+        loadProjects(myProjectQuery, myProjectsNextOffset, false);
+    }
+
+    private static Project getMoreProjectsItem() {
+        var project = new Project();
+        project.ObjectID = -3;
+        project.Name = "More projects...";
+        return project;
+    }
+
+    /**
+     * Fetches a page of projects whose name contains {@code query} in background, results of searches superseded
+     * meanwhile are dropped.
+     *
+     * @param offset 0 to replace the list, offset of the next page to append it
+     * @param select whether to select the repository's project once loaded, as after the workspace has changed
+     */
+    private void loadProjects(String query, int offset, boolean select) {
+        int searchId = ++myProjectSearchId;
+        if (select) {
+            myRepository.prefetchIterations();
+        }
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            var page = myRepository.fetchProjects(query, offset, PROJECTS_PAGE_SIZE);
+            UIUtil.invokeLaterIfNeeded(() -> {
+                if (searchId != myProjectSearchId) {
+                    return;
+                }
+                if (page != null) {
+                    showProjects(query, page, select);
+                } else {
+                    // allow to retry loading the next page
+                    myRequestedProjectsOffset = -1;
+                }
+            });
+        });
+    }
+
+    private void showProjects(String query, QueryPage<Project> page, boolean select) {
+        var items = new ArrayList<>(page.getItems());
+        if (page.hasMore()) {
+            items.add(MORE_PROJECTS);
+        }
+        myUpdatingProjects = true;
+        try {
+            // Rally has matched names already, also by parts the local filter doesn't match
+            myProjectsModel.setFilter("");
+            if (page.getOffset() == 0) {
+                myProjectsModel.setItems(items);
+            } else {
+                myProjectsModel.removeElement(MORE_PROJECTS);
+                myProjectsModel.addAll(items);
+            }
+            myProjectQuery = query;
+            myProjectsNextOffset = page.getNextOffset();
+            myProjectsModel.setSelectedItem(query.isEmpty() ? myRepository.getProject() : query);
+        } finally {
+            myUpdatingProjects = false;
+        }
+        if (select) {
+            selectProject(myRepository.getProject());
+        } else if (myProjects.isShowing()) {
+            myProjects.showPopup();
+        }
+    }
+
+    /**
+     * Selects the loaded instance of {@code selected}, adding it if it isn't on the first page, or the first project.
+     * Selection fires the listener which loads iterations.
+     */
+    private void selectProject(@Nullable Project selected) {
+        if (selected != null && myProjectsModel.find(selected.ObjectID) == null) {
+            myUpdatingProjects = true;
+            try {
+                myProjectsModel.insertElementAt(selected, 0);
+            } finally {
+                myUpdatingProjects = false;
+            }
+        }
+        reselect(myProjects, selected);
+    }
+
+    /**
+     * Selects the item with ObjectID of {@code selected}, or the first one if there is none. Selection is reset first,
+     * to ensure that selected ItemEvent will be fired, even if the same item is selected already.
+     */
+    private static <T extends RallyObject> void reselect(ComboBox<T> comboBox, @Nullable T selected) {
+        var model = getModel(comboBox);
+        T item = selected == null ? null : model.find(selected.ObjectID);
+        if (item == null && model.getSize() > 0 && model.getElementAt(0) != MORE_PROJECTS) {
+            item = model.getElementAt(0);
+        }
+        comboBox.setSelectedItem(null);
+        if (item != null) {
+            comboBox.setSelectedItem(item);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends RallyObject> RallyComboBoxModel<T> getModel(ComboBox<T> comboBox) {
+        return (RallyComboBoxModel<T>) comboBox.getModel();
+    }
+
     private void initialize() {
         final Workspace workspace = myRepository.getWorkspace();
         if (workspace != null && myRepository.isConfigured()) {
+            showCachedLists();
             new FetchWorkspacesTask().queue();
         }
     }
 
+    /**
+     * Fills combo boxes with lists saved on disk, fetch tasks replace them once Rally responds.
+     */
+    private void showCachedLists() {
+        myShowingCached = true;
+        try {
+            showCached(myWorkspaces, Collections.emptyList(), myRepository.getCachedWorkspaces(), myRepository.getWorkspace());
+            showCached(myProjects, Collections.emptyList(), myRepository.getCachedProjects(), myRepository.getProject());
+            showCached(myIterations, Arrays.asList(CURRENT_ITERATION, UNSCHEDULED), myRepository.getCachedIterations(),
+                    myRepository.getIteration());
+        } finally {
+            myShowingCached = false;
+        }
+    }
+
+    private static <T extends RallyObject> void showCached(ComboBox<T> comboBox, List<T> extras, @Nullable List<T> cached,
+                                                           @Nullable T selected) {
+        if (cached == null || cached.isEmpty()) {
+            return;
+        }
+        var items = new ArrayList<T>(extras);
+        items.addAll(cached);
+        var model = getModel(comboBox);
+        model.setItems(items);
+        T item = selected == null ? null : model.find(selected.ObjectID);
+        if (item != null) {
+            comboBox.setSelectedItem(item);
+        }
+    }
+
     @Override
     public void apply() {
         super.apply();
+        // the repository in use gets replaced by this edited clone, it must not go on refreshing with old settings
+        myRepository.stopRefresh();
         myRepository.setWorkspace((Workspace) myWorkspaces.getSelectedItem());
 
         myRepository.setShowCompletedTasks(myShowCompletedCheckbox.isSelected());
         myRepository.setShowOnlyMine(myShowOnlyMineCheckbox.isSelected());
+        myRepository.setSearchAllIterations(mySearchAllIterationsCheckbox.isSelected());
+        myRepository.setRefreshInterval((Integer) myRefreshInterval.getValue());
 
         myTestButton.setEnabled(myRepository.isConfigured());
     }
 
+    @Override
+    public void dispose() {
+        myProjectSearchTimer.stop();
+        super.dispose();
+    }
+
     @Override
     protected void afterTestConnection(boolean connectionSuccessful) {
         super.afterTestConnection(connectionSuccessful);
         if (connectionSuccessful) {
+            // testing connection is the way to reload lists changed in Rally meanwhile
+            myRepository.refreshMetadata();
             new FetchWorkspacesTask().queue();
         }
     }
 
-    private class FetchWorkspacesTask extends TaskUiUtil.ComboBoxUpdater<Workspace> {
-        private FetchWorkspacesTask() {
-            super(RallyRepositoryEditor.this.myProject, "Downloading Rally Workspaces...", myWorkspaces);
+    /**
+     * Puts fetched items into the {@link RallyComboBoxModel} of the combo box instead of replacing the model,
+     * then selects the repository's item again.
+     */
+    private abstract class ModelUpdater<T extends RallyObject> extends TaskUiUtil.ComboBoxUpdater<T> {
+        private ModelUpdater(String title, ComboBox<T> comboBox) {
+            super(RallyRepositoryEditor.this.myProject, title, comboBox);
         }
 
-        @Override
-        public Workspace getExtraItem() {
-            return null;
+        protected List<T> getExtraItems() {
+            return Collections.emptyList();
         }
 
-        @Nullable
         @Override
-        public Workspace getSelectedItem() {
-            return myRepository.getWorkspace();
-        }
-
-        @NotNull
-        @Override
-        protected List<Workspace> fetch(@NotNull ProgressIndicator indicator) throws Exception {
-            return myRepository.fetchWorkspaces();
+        protected void updateUI() {
+            if (myResult == null) {
+                handleError();
+                return;
+            }
+            var items = new ArrayList<T>(getExtraItems());
+            items.addAll(myResult);
+            var comboBox = (ComboBox<T>) myComboBox;
+            getModel(comboBox).setItems(items);
+            reselect(comboBox, getSelectedItem());
         }
     }
 
-    private class FetchProjectsTask extends TaskUiUtil.ComboBoxUpdater<Project> {
-        private FetchProjectsTask() {
-            super(RallyRepositoryEditor.this.myProject, "Downloading Rally Projects...", myProjects);
-        }
-
-        @Override
-        public Project getExtraItem() {
-            return null;
+    private class FetchWorkspacesTask extends ModelUpdater<Workspace> {
+        private FetchWorkspacesTask() {
+            super("Downloading Rally Workspaces...", myWorkspaces);
         }
 
         @Nullable
         @Override
-        public Project getSelectedItem() {
-            return myRepository.getProject();
+        public Workspace getSelectedItem() {
+            return myRepository.getWorkspace();
         }
 
         @NotNull
         @Override
-        protected List<Project> fetch(@NotNull ProgressIndicator indicator) throws Exception {
-            return myRepository.fetchProjects();
+        protected List<Workspace> fetch(@NotNull ProgressIndicator indicator) throws Exception {
+            return myRepository.fetchWorkspaces();
         }
     }
 
-    private class FetchIterationsTask extends TaskUiUtil.ComboBoxUpdater<Iteration> {
+    private class FetchIterationsTask extends ModelUpdater<Iteration> {
         private FetchIterationsTask() {
-            super(RallyRepositoryEditor.this.myProject, "Downloading Rally Iterations...", myIterations);
+            super("Downloading Rally Iterations...", myIterations);
         }
 
         @Nullable
@@ -188,54 +465,9 @@ public class RallyRepositoryEditor extends BaseRepositoryEditor<RallyRepository>
             return myRepository.getIteration();
         }
 
-        public List<Iteration> getExtraItems() {
-            var extras = new ArrayList<Iteration>();
-            extras.add(CURRENT_ITERATION);
-            extras.add(UNSCHEDULED);
-            return extras;
-        }
-
         @Override
-        protected void updateUI() {
-            if (myResult != null) {
-                //noinspection unchecked
-                myComboBox.setModel(new DefaultComboBoxModel(ArrayUtil.toObjectArray(myResult)));
-                final List<Iteration> extras = getExtraItems();
-                if (extras != null) {
-                    for (int i = 0; i < extras.size() ; i++) {
-                        myComboBox.insertItemAt(extras.get(i), i);
-                    }
-                }
-                // ensure that selected ItemEvent will be fired, even if first item of the model
-                // is the same as the next selected
-                myComboBox.setSelectedItem(null);
-
-                final Iteration selected = getSelectedItem();
-                if (selected != null) {
-                    if (!extras.contains(selected) && !myResult.contains(selected)) {
-                        if (addSelectedItemIfMissing()) {
-                            myComboBox.addItem(selected);
-                            myComboBox.setSelectedItem(selected);
-                        }
-                        else {
-                            if (myComboBox.getItemCount() > 0) {
-                                myComboBox.setSelectedIndex(0);
-                            }
-                        }
-                    }
-                    else {
-                        myComboBox.setSelectedItem(selected);
-                    }
-                }
-                else {
-                    if (myComboBox.getItemCount() > 0) {
-                        myComboBox.setSelectedIndex(0);
-                    }
-                }
-            }
-            else {
-                handleError();
-            }
+        protected List<Iteration> getExtraItems() {
+            return Arrays.asList(CURRENT_ITERATION, UNSCHEDULED);
         }
 
         @NotNull
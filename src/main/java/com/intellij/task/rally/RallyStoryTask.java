@@ -1,5 +1,7 @@
 package com.intellij.task.rally;
 
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.task.rally.models.HierarchicalRequirement;
 import com.intellij.tasks.Comment;
 import com.intellij.tasks.Task;
@@ -8,19 +10,42 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
+import java.io.IOException;
 import java.util.Date;
 
 public class RallyStoryTask extends Task {
+    private static final Logger LOG = Logger.getInstance("#com.intellij.tasks.rally.RallyStoryTask");
 
     private HierarchicalRequirement rallyStory;
+    private final RallyObjectsProvider provider;
+    private final CommentLoader comments;
     private Icon icon;
+    private volatile boolean descriptionLoaded;
+    private volatile String description;
 
     public RallyStoryTask(HierarchicalRequirement story)
+    {
+        this(story, null, null);
+    }
+
+    /**
+     * @param provider loads the description on first request unless it was preloaded, as list queries don't
+     *                 fetch it; on the EDT it is only loaded in background
+     * @param comments loads the discussion on first request
+     */
+    RallyStoryTask(HierarchicalRequirement story, @Nullable RallyObjectsProvider provider,
+                   @Nullable CommentLoader comments)
     {
         rallyStory = story;
+        this.provider = provider;
+        this.comments = comments;
         icon =  new ImageIcon(this.getClass().getClassLoader().getResource("rally_feature.png"), "Rally Feature Icon");
     }
 
+    HierarchicalRequirement getStory() {
+        return rallyStory;
+    }
+
     @Override
     public @NotNull String getId() {
         return rallyStory.FormattedID;
@@ -33,12 +58,43 @@ public class RallyStoryTask extends Task {
 
     @Override
     public @Nullable String getDescription() {
-        return rallyStory.Description;
+        if (rallyStory.Description != null || provider == null) {
+            return rallyStory.Description;
+        }
+        if (descriptionLoaded) {
+            return description;
+        }
+        var application = ApplicationManager.getApplication();
+        if (application.isDispatchThread() && !provider.isDescriptionLoaded(rallyStory)) {
+            // only when preloading failed: the UI must not wait for Rally
+            application.executeOnPooledThread(this::loadDescription);
+            return null;
+        }
+        return loadDescription();
+    }
+
+    /**
+     * Sets the description loaded for the task list off the EDT, before the IDE shows the task.
+     */
+    void setDescription(@Nullable String description) {
+        this.description = description;
+        descriptionLoaded = true;
+    }
+
+    private String loadDescription() {
+        try {
+            String loaded = provider.getDescription(rallyStory);
+            setDescription(loaded);
+            return loaded;
+        } catch (IOException e) {
+            LOG.warn("Error while fetching description of " + rallyStory.FormattedID, e);
+            return null;
+        }
     }
 
     @Override
     public @NotNull Comment[] getComments() {
-        return new Comment[0];
+        return comments == null ? new Comment[0] : comments.getComments(rallyStory);
     }
 
     @Override
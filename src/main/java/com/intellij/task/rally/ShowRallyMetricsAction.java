@@ -0,0 +1,17 @@
+package com.intellij.task.rally;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.ui.Messages;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Shows timings and sizes of Rally requests made since the IDE started, see {@link RallyMetrics}.
+ */
+public class ShowRallyMetricsAction extends AnAction {
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Messages.showInfoMessage(e.getProject(), RallyMetrics.getInstance().getReport(), "Rally Query Metrics");
+    }
+}
@@ -0,0 +1,39 @@
+package com.intellij.task.rally;
+
+/**
+ * Which tasks of the iteration user wants to see, compiled into Rally queries by {@link RallyObjectsProvider}.
+ */
+public final class TaskFilter {
+    public static final TaskFilter ALL = new TaskFilter(true, false);
+
+    private final boolean includeCompleted;
+    private final boolean onlyMine;
+
+    private TaskFilter(boolean includeCompleted, boolean onlyMine) {
+        this.includeCompleted = includeCompleted;
+        this.onlyMine = onlyMine;
+    }
+
+    public static TaskFilter of(boolean includeCompleted, boolean onlyMine) {
+        return new TaskFilter(includeCompleted, onlyMine);
+    }
+
+    /**
+     * @return whether completed and accepted stories, fixed and closed defects should be shown
+     */
+    public boolean isIncludeCompleted() {
+        return includeCompleted;
+    }
+
+    /**
+     * @return whether only tasks owned by the user the repository is connected with should be shown
+     */
+    public boolean isOnlyMine() {
+        return onlyMine;
+    }
+
+    @Override
+    public String toString() {
+        return (includeCompleted ? "all" : "open") + (onlyMine ? "-mine" : "");
+    }
+}
@@ -0,0 +1,12 @@
+package com.intellij.task.rally.models;
+
+import java.util.Date;
+
+/**
+ * Common part of work items: stories, defects etc.
+ */
+public class Artifact extends RallyObject {
+    public Date CreationDate;
+    public Date LastUpdateDate;
+    public String DragAndDropRank;
+}
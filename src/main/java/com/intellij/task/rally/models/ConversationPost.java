@@ -0,0 +1,23 @@
+package com.intellij.task.rally.models;
+
+import java.util.Date;
+
+/**
+ * Post in the discussion of a story or defect.
+ */
+public class ConversationPost extends RallyObject {
+    /**
+     * Rich text
+     */
+    public String Text;
+    public int PostNumber;
+    public Date CreationDate;
+    /**
+     * Reference to the author, {@code _refObjectName} holds the display name
+     */
+    public RallyObject User;
+    /**
+     * Reference to the story or defect discussed
+     */
+    public RallyObject Artifact;
+}
@@ -1,6 +1,6 @@
 package com.intellij.task.rally.models;
 
-public class Defect extends RallyObject {
+public class Defect extends Artifact {
     public String Severity;
     public String Priority;
     public String State;
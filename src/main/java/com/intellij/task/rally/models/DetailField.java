@@ -0,0 +1,15 @@
+package com.intellij.task.rally.models;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks model fields which are too heavy for list queries and are fetched only with
+ * {@link org.sbelei.rally.domain.constants.FetchProfile#DETAIL}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface DetailField {
+}
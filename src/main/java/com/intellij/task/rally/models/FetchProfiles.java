@@ -0,0 +1,43 @@
+package com.intellij.task.rally.models;
+
+import org.sbelei.rally.domain.constants.FetchProfile;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Derives Rally fetch lists from the public fields of model classes, so queries transfer only what we map.
+ * Fields starting with underscore (_ref, _refObjectName...) are returned by Rally anyway and are skipped.
+ */
+public final class FetchProfiles {
+    private static final Map<Class<?>, Map<FetchProfile, String[]>> CACHE = new ConcurrentHashMap<>();
+
+    private FetchProfiles() {
+    }
+
+    public static String[] of(Class<? extends RallyObject> type, FetchProfile profile) {
+        return CACHE.computeIfAbsent(type, FetchProfiles::collect).get(profile);
+    }
+
+    private static Map<FetchProfile, String[]> collect(Class<?> type) {
+        var list = new ArrayList<String>();
+        var detail = new ArrayList<String>();
+        for (Field field : type.getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || field.getName().startsWith("_")) {
+                continue;
+            }
+            detail.add(field.getName());
+            if (!field.isAnnotationPresent(DetailField.class)) {
+                list.add(field.getName());
+            }
+        }
+        var profiles = new EnumMap<FetchProfile, String[]>(FetchProfile.class);
+        profiles.put(FetchProfile.LIST, list.toArray(new String[0]));
+        profiles.put(FetchProfile.DETAIL, detail.toArray(new String[0]));
+        return profiles;
+    }
+}
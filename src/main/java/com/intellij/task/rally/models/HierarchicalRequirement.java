@@ -1,10 +1,11 @@
 package com.intellij.task.rally.models;
 
-import java.util.Date;
-
-public class HierarchicalRequirement extends RallyObject {
-    public Date CreationDate;
-    public Date LastUpdateDate;
+public class HierarchicalRequirement extends Artifact {
+    /**
+     * Rich text, only present in stories fetched one by one, see
+     * {@link com.intellij.task.rally.RallyObjectsProvider#getDescription(HierarchicalRequirement)}
+     */
+    @DetailField
     public String Description;
     public String ScheduleState;
 }
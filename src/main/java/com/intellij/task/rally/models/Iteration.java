@@ -1,4 +1,12 @@
 package com.intellij.task.rally.models;
 
+import com.intellij.util.xmlb.annotations.Transient;
+
+import java.util.Date;
+
 public class Iteration extends RallyObject{
+    @Transient
+    public Date StartDate;
+    @Transient
+    public Date EndDate;
 }
@@ -1,4 +1,11 @@
 package com.intellij.task.rally.models;
 
+import com.intellij.util.xmlb.annotations.Transient;
+
 public class Project extends RallyObject {
+    /**
+     * Reference to the parent project, {@code _refObjectName} holds its name; {@code null} for top level projects
+     */
+    @Transient
+    public RallyObject Parent;
 }
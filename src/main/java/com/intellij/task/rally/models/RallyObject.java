@@ -4,6 +4,7 @@ public class RallyObject {
     public String _ref;
     public String _refObjectUUID;
     public String _refObjectName;
+    public String _objectVersion;
     public String Name;
     public long ObjectID;
     public String ObjectUUID;
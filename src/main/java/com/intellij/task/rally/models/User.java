@@ -0,0 +1,6 @@
+package com.intellij.task.rally.models;
+
+public class User extends RallyObject {
+    public String UserName;
+    public String DisplayName;
+}
@@ -0,0 +1,17 @@
+package org.sbelei.rally.domain.constants;
+
+/**
+ * Sets of fields requested from Rally for an object.
+ * 
+ * @see org.sbelei.rally.helpers.QueryRequestDecorator#setFetch(String...)
+ */
+public enum FetchProfile {
+	/**
+	 * Fields needed to show the object in lists and combo boxes
+	 */
+	LIST,
+	/**
+	 * Everything the plugin maps, including heavy fields shown for a single object only
+	 */
+	DETAIL;
+}
@@ -8,5 +8,7 @@ public interface Type {
     public static String TASK = "task";
     public static String STORY = "hierarchicalrequirement";
 	public static String PROJECT = "project";
+	public static String USER = "user";
+	public static String CONVERSATION_POST = "conversationpost";
 
 }
@@ -1,15 +1,27 @@
 package org.sbelei.rally.helpers;
 
 import java.text.SimpleDateFormat;
+import java.time.Instant;
 import java.util.Date;
+import java.util.Locale;
+import java.util.regex.Pattern;
 
 import org.sbelei.rally.domain.constants.DefectState;
+import org.sbelei.rally.domain.constants.StoryState;
 
 import com.rallydev.rest.util.QueryFilter;
 
 public class FilterHelper {
 	
+	/**
+	 * Rally ids like US1234 or DE567, prefixes are configurable per
+	 * subscription
+	 */
+	public static final Pattern FORMATTED_ID = Pattern.compile("[A-Za-z]{1,6}\\d+");
+
 	private static final String EQ = "=";
+	private static final String GT = ">";
+	private static final String CONTAINS = "contains";
 	
 	private static SimpleDateFormat FORMAT = new SimpleDateFormat("YYYY-MM-dd'T'00:00:00.000'Z'");
 	
@@ -26,6 +38,18 @@ public class FilterHelper {
 		return getFilter("Owner.Name", EQ, owner);
 	}
 	
+	public static QueryFilter includeByOwnerId(String ownerId){
+		return getFilter("Owner.ObjectID", EQ, ownerId);
+	}
+	
+	public static QueryFilter includeByScheduleStates(StoryState state, StoryState... states){
+		QueryFilter filter = getFilter("ScheduleState", EQ, state.toString());
+		for(StoryState theState : states) {
+			filter = filter.or(new QueryFilter("ScheduleState", EQ, theState.toString()));
+		}
+		return filter;
+	}
+	
 	public static QueryFilter includeByStates(DefectState state, DefectState... states){
 		QueryFilter filter = getFilter("State", EQ, state.toString());
 		for(DefectState theState : states) {
@@ -34,6 +58,60 @@ public class FilterHelper {
 		return filter;
 	}
 	
+	public static QueryFilter byFormattedId(String formattedId){
+		return getFilter("FormattedID", EQ, formattedId);
+	}
+
+	public static QueryFilter byObjectId(String objectId){
+		return getFilter("ObjectID", EQ, objectId);
+	}
+
+	public static QueryFilter byArtifactId(String artifactId){
+		return getFilter("Artifact.ObjectID", EQ, artifactId);
+	}
+
+	/**
+	 * Translates text typed by user into the filter: ids are matched by
+	 * FormattedID, anything else by name.
+	 * 
+	 * @return filter or {@code null} for blank text
+	 */
+	public static QueryFilter bySearchText(String text){
+		if (text == null || text.trim().isEmpty()) {
+			return null;
+		}
+		String trimmed = text.trim();
+		QueryFilter byName = byNameContains(trimmed);
+		if (FORMATTED_ID.matcher(trimmed).matches()) {
+			return byFormattedId(trimmed.toUpperCase(Locale.ROOT)).or(byName);
+		}
+		return byName;
+	}
+
+	/**
+	 * Matches names containing the text typed by user, which is quoted, so
+	 * spaces and parentheses don't break the query.
+	 * 
+	 * @return filter or {@code null} for blank text
+	 */
+	public static QueryFilter byNameContains(String text){
+		if (text == null || text.trim().isEmpty()) {
+			return null;
+		}
+		return new QuotedFilter("Name", CONTAINS, text.trim());
+	}
+
+	/**
+	 * @param parentId
+	 *            parent project, {@code null} for the top level projects
+	 */
+	public static QueryFilter byParentId(String parentId){
+		if (parentId == null) {
+			return new QueryFilter("Parent", EQ, "null");
+		}
+		return getFilter("Parent.ObjectID", EQ, parentId);
+	}
+
 	public static QueryFilter byIterationId(String iterationId){
 		return getFilter("Iteration.ObjectID", EQ, iterationId);
 	}
@@ -42,8 +120,52 @@ public class FilterHelper {
 		return getFilter("Project.ObjectID", EQ, projectId);
 	}
 	
+	/**
+	 * @param since
+	 *            timestamp in milliseconds, values less or equal to 0 mean "no
+	 *            restriction"
+	 */
+	public static QueryFilter updatedSince(long since){
+		if (since <= 0) {
+			return null;
+		}
+		return getFilter("LastUpdateDate", GT, queryTimestamp(new Date(since)));
+	}
+	
 	public static String queryDate(Date date){		
 		return FORMAT.format(date);		
 	}
 
+	/**
+	 * Unlike {@link #queryDate(Date)} keeps time part, so it could be used
+	 * for fine grained comparisons.
+	 */
+	public static String queryTimestamp(Date date){
+		return Instant.ofEpochMilli(date.getTime()).toString();
+	}
+
+	/**
+	 * {@link QueryFilter} quotes only values with spaces, so parentheses or
+	 * quotes typed by user would break the query. This one always quotes the
+	 * value and escapes quotes in it.
+	 */
+	private static class QuotedFilter extends QueryFilter {
+		private final String field;
+		private final String operator;
+		private final String value;
+
+		QuotedFilter(String field, String operator, String value) {
+			super(field, operator, value);
+			this.field = field;
+			this.operator = operator;
+			this.value = value;
+		}
+
+		@Override
+		public String toString() {
+			String escaped = value.replace("\\", "\\\\").replace("\"", "\\\"");
+			return "(" + field + " " + operator + " \"" + escaped + "\")";
+		}
+	}
+
 }
@@ -6,6 +6,11 @@ import java.util.List;
 import com.rallydev.rest.util.QueryFilter;
 
 public class QueryFilterBuilder {
+
+	/**
+	 * Length "(a OR b)" adds to its operands.
+	 */
+	private static final int OR_LENGTH = "( OR )".length();
 	
 	private List<QueryFilter> filters;
 	
@@ -17,6 +22,35 @@ public class QueryFilterBuilder {
 		filters.add(filter);
 	}
 	
+	/**
+	 * Splits filters into groups "or"-ed together, each not longer than
+	 * {@code maxLength} characters, so lookups of many objects fit into a
+	 * few URLs. A single filter longer than the limit gets its own group.
+	 */
+	public static List<QueryFilter> chunkedOr(List<QueryFilter> filters, int maxLength){
+		List<QueryFilter> chunks = new ArrayList<QueryFilter>();
+		QueryFilter chunk = null;
+		int length = 0;
+		for (QueryFilter filter : filters) {
+			int filterLength = filter.toString().length();
+			if (chunk != null && length + filterLength + OR_LENGTH > maxLength) {
+				chunks.add(chunk);
+				chunk = null;
+			}
+			if (chunk == null) {
+				chunk = filter;
+				length = filterLength;
+			} else {
+				chunk = chunk.or(filter);
+				length += filterLength + OR_LENGTH;
+			}
+		}
+		if (chunk != null) {
+			chunks.add(chunk);
+		}
+		return chunks;
+	}
+
 	public QueryFilter buildQuery(){
 		QueryFilter result = null;
 		//let's "and" all queries
@@ -1,6 +1,7 @@
 package org.sbelei.rally.helpers;
 
 import com.rallydev.rest.request.QueryRequest;
+import com.rallydev.rest.util.Fetch;
 import com.rallydev.rest.util.QueryFilter;
 
 public class QueryRequestDecorator {
@@ -34,4 +35,35 @@ public class QueryRequestDecorator {
 			request.setWorkspace(workspaceId);
 		}		
 	}
+
+	/**
+	 * Limits request to the single page of results.
+	 *
+	 * @param start
+	 *            1-based index of the first result, as Rally expects it
+	 * @param pageSize
+	 *            number of results to fetch, also used as a limit so client
+	 *            will not follow up with requests for next pages
+	 */
+	public void setPage(int start, int pageSize) {
+		request.setStart(start);
+		request.setPageSize(pageSize);
+		request.setLimit(pageSize);
+	}
+
+	/**
+	 * Restricts the fields returned for each object, without it Rally sends
+	 * every field of the type including references to parent objects.
+	 */
+	public void setFetch(String... fields) {
+		if (fields != null && fields.length > 0) {
+			request.setFetch(new Fetch(fields));
+		}
+	}
+
+	public void setOrder(String order) {
+		if (order != null) {
+			request.setOrder(order);
+		}
+	}
 }
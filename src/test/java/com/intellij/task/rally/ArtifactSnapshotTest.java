@@ -0,0 +1,51 @@
+package com.intellij.task.rally;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.intellij.task.rally.models.HierarchicalRequirement;
+
+
+public class ArtifactSnapshotTest {
+
+	@Test
+	public void testMergeUpdatesRemovesAndKeepsRank() throws Exception {
+		var snapshot = new ArtifactSnapshot<>(Arrays.asList(story(1, "b", 100), story(2, "c", 200), story(3, "a", 300)));
+		assertEquals(Arrays.asList(3L, 1L, 2L), ids(snapshot));
+		assertEquals(300, snapshot.getWatermark().getTime());
+
+		var updated = story(2, "0", 400);
+		assertTrue(snapshot.merge(Collections.singletonList(updated), Set.of(2L, 3L)));
+
+		assertEquals(Arrays.asList(2L, 3L), ids(snapshot));
+		assertSame(updated, snapshot.getItems().get(0));
+		assertEquals(400, snapshot.getWatermark().getTime());
+	}
+
+	@Test
+	public void testUnchangedSnapshotKeepsItems() throws Exception {
+		var snapshot = new ArtifactSnapshot<>(Arrays.asList(story(1, "a", 100), story(2, "b", 200)));
+		var items = snapshot.getItems();
+
+		assertFalse(snapshot.merge(Collections.emptyList(), Set.of(1L, 2L)));
+		assertSame(items, snapshot.getItems());
+	}
+
+	private static java.util.List<Long> ids(ArtifactSnapshot<HierarchicalRequirement> snapshot) {
+		return Arrays.asList(snapshot.getItems().stream().map(story -> story.ObjectID).toArray(Long[]::new));
+	}
+
+	private static HierarchicalRequirement story(long id, String rank, long updated) {
+		var story = new HierarchicalRequirement();
+		story.ObjectID = id;
+		story.DragAndDropRank = rank;
+		story.LastUpdateDate = new Date(updated);
+		return story;
+	}
+}
@@ -0,0 +1,39 @@
+package com.intellij.task.rally;
+
+import static org.junit.Assert.*;
+
+import java.util.Date;
+
+import org.junit.Test;
+
+import com.intellij.task.rally.models.Iteration;
+
+
+public class CurrentIterationCacheTest {
+
+	private static final long NOW = 1373796930500L;
+
+	@Test
+	public void testIterationIsCachedUntilItEnds() throws Exception {
+		var cache = new CurrentIterationCache();
+		var iteration = new Iteration();
+		iteration.EndDate = new Date(NOW + 1000);
+		cache.put(1, 2, iteration, NOW);
+
+		assertSame(iteration, cache.get(1, 2, NOW + 999).iteration);
+		assertNull(cache.get(1, 2, NOW + 1000));
+		// other project shouldn't see it
+		assertNull(cache.get(1, 3, NOW));
+	}
+
+	@Test
+	public void testMissingIterationIsCachedBriefly() throws Exception {
+		var cache = new CurrentIterationCache();
+		cache.put(1, 2, null, NOW);
+
+		var entry = cache.get(1, 2, NOW + 1);
+		assertNotNull(entry);
+		assertNull(entry.iteration);
+		assertNull(cache.get(1, 2, NOW + CurrentIterationCache.NO_ITERATION_TTL));
+	}
+}
@@ -0,0 +1,76 @@
+package com.intellij.task.rally;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.intellij.tasks.Task;
+
+public class IssuesCacheTest {
+
+	private static final long FRESH = 1000;
+	private static final long MAX_AGE = 10000;
+
+	@Test
+	public void testFreshResultReused() throws Exception {
+		var cache = new IssuesCache(FRESH, MAX_AGE, 100);
+		var loads = new AtomicInteger();
+
+		var first = cache.get("key", 0, () -> tasks(loads.incrementAndGet()), Runnable::run);
+		var second = cache.get("key", FRESH - 1, () -> tasks(loads.incrementAndGet()), Runnable::run);
+
+		assertSame(first, second);
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	public void testStaleResultReturnedAndRevalidated() throws Exception {
+		var cache = new IssuesCache(FRESH, MAX_AGE, 100);
+		var background = new ArrayList<Runnable>();
+		var first = cache.get("key", 0, () -> tasks(1), background::add);
+
+		var stale = cache.get("key", FRESH, () -> tasks(2), background::add);
+		// revalidation is started only once
+		cache.get("key", FRESH, () -> tasks(3), background::add);
+
+		assertSame(first, stale);
+		assertEquals(1, background.size());
+		background.get(0).run();
+		assertEquals(2, cache.get("key", FRESH, () -> tasks(4), background::add).length);
+	}
+
+	@Test
+	public void testExpiredResultReloaded() throws Exception {
+		var cache = new IssuesCache(FRESH, MAX_AGE, 100);
+		cache.get("key", 0, () -> tasks(1), Runnable::run);
+
+		assertEquals(2, cache.get("key", MAX_AGE, () -> tasks(2), Runnable::run).length);
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEvicted() throws Exception {
+		var cache = new IssuesCache(FRESH, MAX_AGE, 5);
+		cache.get("a", 0, () -> tasks(2), Runnable::run);
+		cache.get("b", 0, () -> tasks(2), Runnable::run);
+		cache.get("a", 0, () -> tasks(2), Runnable::run);
+
+		cache.get("c", 0, () -> tasks(2), Runnable::run);
+
+		assertEquals(2, cache.size());
+		var loads = new AtomicInteger();
+		cache.get("a", 0, () -> tasks(loads.incrementAndGet()), Runnable::run);
+		assertEquals(0, loads.get());
+	}
+
+	private static Task[] tasks(int count) {
+		List<Task> tasks = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			tasks.add(null);
+		}
+		return tasks.toArray(new Task[0]);
+	}
+}
@@ -0,0 +1,34 @@
+package com.intellij.task.rally;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class MetadataCacheTest {
+
+	@Test
+	public void testExpiresAfterTtl() throws Exception {
+		var cache = new MetadataCache(1000);
+		var projects = Arrays.asList("a", "b");
+		cache.put("url|projects|1", projects, 0);
+
+		assertSame(projects, cache.get("url|projects|1", 999));
+		assertNull(cache.get("url|projects|1", 1000));
+	}
+
+	@Test
+	public void testInvalidateByPrefix() throws Exception {
+		var cache = new MetadataCache(1000);
+		cache.put("url|projects|1", Arrays.asList("a"), 0);
+		cache.put("other|projects|1", Arrays.asList("b"), 0);
+
+		cache.invalidate("url|");
+
+		assertNull(cache.get("url|projects|1", 0));
+		List<String> other = cache.get("other|projects|1", 0);
+		assertEquals(Arrays.asList("b"), other);
+	}
+}
@@ -0,0 +1,122 @@
+package com.intellij.task.rally;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.intellij.task.rally.models.Project;
+
+public class RallyComboBoxModelTest {
+
+	private final RallyComboBoxModel<Project> model = new RallyComboBoxModel<>();
+	private final List<ListDataEvent> events = new ArrayList<>();
+
+	@Before
+	public void setUp() {
+		model.setItems(Arrays.asList(project(-3, "More projects..."), project(1, "Team Alpha"),
+				project(2, "alpha-web"), project(3, "Beta"), project(4, "Alphabet soup")));
+		model.addListDataListener(new ListDataListener() {
+			@Override
+			public void intervalAdded(ListDataEvent e) {
+				events.add(e);
+			}
+
+			@Override
+			public void intervalRemoved(ListDataEvent e) {
+				events.add(e);
+			}
+
+			@Override
+			public void contentsChanged(ListDataEvent e) {
+				events.add(e);
+			}
+		});
+	}
+
+	@Test
+	public void testFilterMatchesWordPrefixesInModelOrder() {
+		model.setFilter("ALPHA");
+
+		assertEquals(Arrays.asList("More projects...", "Team Alpha", "alpha-web", "Alphabet soup"), names());
+
+		model.setFilter("web");
+		assertEquals(Arrays.asList("More projects...", "alpha-web"), names());
+
+		model.setFilter("eta");
+		assertEquals(Arrays.asList("More projects..."), names());
+
+		model.setFilter("team al");
+		assertEquals(Arrays.asList("More projects...", "Team Alpha"), names());
+
+		model.setFilter("");
+		assertEquals(5, model.getSize());
+	}
+
+	@Test
+	public void testIncrementalUpdatesWhileFiltered() {
+		model.setFilter("alpha");
+		model.addAll(Arrays.asList(project(5, "Alpha mobile"), project(6, "Gamma")));
+
+		assertEquals("Alpha mobile", model.getElementAt(model.getSize() - 1).Name);
+		assertEquals(4, model.getSize() - 1);
+
+		model.removeElement(model.find(1));
+		assertEquals(Arrays.asList("More projects...", "alpha-web", "Alphabet soup", "Alpha mobile"), names());
+		assertNull(model.find(1));
+	}
+
+	@Test
+	public void testAppendFiresOnlyAddedInterval() {
+		model.addAll(Arrays.asList(project(5, "Gamma"), project(6, "Delta")));
+
+		assertEquals(1, events.size());
+		assertEquals(ListDataEvent.INTERVAL_ADDED, events.get(0).getType());
+		assertEquals(5, events.get(0).getIndex0());
+		assertEquals(6, events.get(0).getIndex1());
+	}
+
+	@Test
+	public void testFindByObjectId() {
+		Project configured = project(3, "Beta");
+		model.insertElementAt(configured, 0);
+
+		assertSame(configured, model.find(3));
+		assertEquals(4, model.find(4).ObjectID);
+		assertNull(model.find(42));
+	}
+
+	@Test
+	public void testLongNames() {
+		String name = "Platform services and infrastructure team";
+		model.addElement(project(5, name));
+
+		model.setFilter("platform services and infrastructure t");
+		assertEquals(Arrays.asList("More projects...", name), names());
+
+		model.setFilter("platform services and infrastructure x");
+		assertEquals(Arrays.asList("More projects..."), names());
+	}
+
+	private List<String> names() {
+		List<String> names = new ArrayList<>();
+		for (int i = 0; i < model.getSize(); i++) {
+			names.add(model.getElementAt(i).Name);
+		}
+		return names;
+	}
+
+	private static Project project(long objectId, String name) {
+		Project project = new Project();
+		project.ObjectID = objectId;
+		project.Name = name;
+		return project;
+	}
+}
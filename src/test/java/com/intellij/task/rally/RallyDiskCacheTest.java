@@ -0,0 +1,79 @@
+package com.intellij.task.rally;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.intellij.task.rally.models.ConversationPost;
+import com.intellij.task.rally.models.Defect;
+import com.intellij.task.rally.models.HierarchicalRequirement;
+import com.intellij.task.rally.models.RallyObject;
+
+
+public class RallyDiskCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private RallyDiskCache cache;
+
+	@Before
+	public void setUp() {
+		cache = new RallyDiskCache(folder.getRoot().toPath());
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		var story = new HierarchicalRequirement();
+		story.ObjectID = 42;
+		story.FormattedID = "US42";
+		story.Name = "Story with \u00fcnicode";
+		story.LastUpdateDate = new Date(1373796930500L);
+		String key = RallyDiskCache.key("https://rally1.rallydev.com", "stories", 1, 2, 3);
+
+		cache.save(key, HierarchicalRequirement.class, Arrays.asList(story, new HierarchicalRequirement()));
+		var loaded = cache.load(key, HierarchicalRequirement.class);
+
+		assertEquals(2, loaded.size());
+		assertEquals("US42", loaded.get(0).FormattedID);
+		assertEquals(story.Name, loaded.get(0).Name);
+		assertEquals(story.LastUpdateDate, loaded.get(0).LastUpdateDate);
+		assertNull(loaded.get(0).Description);
+		assertNull(loaded.get(1).LastUpdateDate);
+	}
+
+	@Test
+	public void testReferencesRoundTrip() throws Exception {
+		var post = new ConversationPost();
+		post.Text = "Looks good";
+		post.User = new RallyObject();
+		post.User.ObjectID = 7;
+		post.User._refObjectName = "Dev User";
+		String key = RallyDiskCache.key("https://rally1.rallydev.com", "posts", 1);
+
+		cache.save(key, ConversationPost.class, Arrays.asList(post));
+		var loaded = cache.load(key, ConversationPost.class);
+
+		assertEquals("Looks good", loaded.get(0).Text);
+		assertEquals(7, loaded.get(0).User.ObjectID);
+		assertEquals("Dev User", loaded.get(0).User._refObjectName);
+		assertNull(loaded.get(0).Artifact);
+		assertEquals(1, folder.getRoot().list().length);
+	}
+
+	@Test
+	public void testMissingOrIncompatibleEntries() throws Exception {
+		String key = RallyDiskCache.key("https://rally1.rallydev.com", "defects", 1, 2, 3);
+		assertNull(cache.load(key, Defect.class));
+
+		cache.save(key, Defect.class, Arrays.asList(new Defect()));
+		// file written for another model layout shouldn't be misread
+		assertNull(cache.load(key, HierarchicalRequirement.class));
+	}
+}
@@ -0,0 +1,62 @@
+package com.intellij.task.rally;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class RallyHttpClientsTest {
+
+	private static final String URL = "https://rally1.rallydev.com";
+
+	@Test
+	public void testSharedBySameCredentials() throws Exception {
+		var clients = new RallyHttpClients(10, 10, 1000);
+		Object repository = new Object();
+		Object clone = new Object();
+
+		var client = clients.acquire(repository, new RallyHttpClients.Key(URL, "user", "token"));
+
+		assertSame(client, clients.acquire(clone, new RallyHttpClients.Key(URL, "user", "token")));
+		assertNotSame(client, clients.acquire(clone, new RallyHttpClients.Key(URL, "user", "other token")));
+		assertEquals(2, clients.size());
+	}
+
+	@Test
+	public void testRequestsInFlightSharedBySameAccount() throws Exception {
+		var clients = new RallyHttpClients(10, 10, 1000);
+		var key = new RallyHttpClients.Key(URL, "user", "token");
+		var other = new RallyHttpClients.Key(URL, "other", "token");
+		clients.acquire(new Object(), key);
+		clients.acquire(new Object(), other);
+
+		assertSame(clients.getInFlight(key), clients.getInFlight(new RallyHttpClients.Key(URL, "user", "token")));
+		assertNotSame(clients.getInFlight(key), clients.getInFlight(other));
+	}
+
+	@Test
+	public void testReleasedPoolClosedAfterIdleTimeout() throws Exception {
+		var clients = new RallyHttpClients(10, 10, 1000);
+		Object repository = new Object();
+		var key = new RallyHttpClients.Key(URL, "user", "token");
+		clients.acquire(repository, key);
+
+		clients.release(repository, key);
+		long released = System.currentTimeMillis();
+		clients.evictIdle(released);
+		assertEquals(1, clients.size());
+
+		clients.evictIdle(released + 1000);
+		assertEquals(0, clients.size());
+	}
+
+	@Test
+	public void testUsedPoolIsKept() throws Exception {
+		var clients = new RallyHttpClients(10, 10, 1000);
+		Object repository = new Object();
+		clients.acquire(repository, new RallyHttpClients.Key(URL, "user", "token"));
+
+		clients.evictIdle(System.currentTimeMillis() + 10000);
+
+		assertEquals(1, clients.size());
+	}
+}
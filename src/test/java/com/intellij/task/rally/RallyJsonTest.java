@@ -0,0 +1,46 @@
+package com.intellij.task.rally;
+
+import static org.junit.Assert.*;
+import static org.sbelei.rally.TestHelper.getResourceAsReader;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.Instant;
+
+import org.junit.Test;
+
+import com.intellij.task.rally.models.HierarchicalRequirement;
+import com.intellij.task.rally.models.Iteration;
+
+
+public class RallyJsonTest {
+
+	@Test
+	public void testReadQueryResult() throws Exception {
+		var page = RallyJson.readQueryResult(getResourceAsReader("/iteration-response.json"), Iteration.class, 0);
+		assertEquals(3, page.getTotalResultCount());
+		assertEquals(3, page.getItems().size());
+		assertEquals("Iteration A", page.getItems().get(0).Name);
+		assertEquals(11597834390L, page.getItems().get(0).ObjectID);
+	}
+
+	@Test
+	public void testReadDates() throws Exception {
+		var page = RallyJson.readQueryResult(getResourceAsReader("/story-response.json"), HierarchicalRequirement.class, 0);
+		var story = page.getItems().get(1);
+		assertEquals(Instant.parse("2013-06-28T09:15:42.120Z").toEpochMilli(), story.LastUpdateDate.getTime());
+		assertEquals("In-Progress", story.ScheduleState);
+	}
+
+	@Test
+	public void testParseDateWithoutMillis() throws Exception {
+		assertEquals(Instant.parse("2013-06-26T05:00:00Z").toEpochMilli(), IsoDateTypeAdapter.parse("2013-06-26T05:00:00Z").getTime());
+		assertEquals(Instant.parse("2013-06-26T05:00:00Z").toEpochMilli(), IsoDateTypeAdapter.parse("2013-06-26T07:00:00+02:00").getTime());
+	}
+
+	@Test(expected = IOException.class)
+	public void testErrorsAreReported() throws Exception {
+		String response = "{\"QueryResult\": {\"Errors\": [\"Could not parse: Unknown operator\"], \"TotalResultCount\": 0, \"Results\": []}}";
+		RallyJson.readQueryResult(new StringReader(response), Iteration.class, 0);
+	}
+}
@@ -0,0 +1,60 @@
+package com.intellij.task.rally;
+
+import static org.junit.Assert.*;
+import static org.sbelei.rally.TestHelper.getRestApiWithResponse;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import com.rallydev.rest.RallyRestApi;
+
+public class RallyMetricsTest {
+
+	@Test
+	public void testQueryType() throws Exception {
+		assertEquals("hierarchicalrequirement", RallyMetrics.queryType("/hierarchicalrequirement.js?query=%28a%29"));
+		assertEquals("defect", RallyMetrics.queryType("/defect/1234?fetch=Name"));
+	}
+
+	@Test
+	public void testPercentiles() throws Exception {
+		var histogram = new LatencyHistogram();
+		for (int i = 1; i <= 100; i++) {
+			histogram.record(i * 1_000_000L);
+		}
+
+		// buckets are within 19% of the value
+		assertEquals(50, histogram.getPercentileMillis(0.5), 50 * 0.19);
+		assertEquals(95, histogram.getPercentileMillis(0.95), 95 * 0.19);
+		assertEquals(99, histogram.getPercentileMillis(0.99), 99 * 0.19);
+	}
+
+	@Test
+	public void testQueriesRecorded() throws Exception {
+		RallyRestApi restApi = getRestApiWithResponse("/story-response.json");
+		var stats = RallyMetrics.getInstance().query("hierarchicalrequirement");
+		long count = stats.getCount();
+		long results = stats.getResults();
+
+		new RallyObjectsProvider(restApi).getStories(42, 42, 42);
+
+		assertEquals(count + 1, stats.getCount());
+		assertEquals(results + 3, stats.getResults());
+		assertTrue(stats.getResponseBytes() > 0);
+		assertTrue(RallyMetrics.getInstance().getReport().contains("hierarchicalrequirement\n    requests: "));
+	}
+
+	@Test
+	public void testMBeanUnregisteredOnDispose() throws Exception {
+		var name = new ObjectName(RallyMetrics.OBJECT_NAME);
+		var exporter = new RallyMetricsExporter(RallyMetrics.getInstance());
+		assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+
+		exporter.dispose();
+
+		assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+	}
+}
@@ -0,0 +1,308 @@
+package com.intellij.task.rally;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.sbelei.rally.TestHelper.getRestApiWithResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.intellij.task.rally.models.HierarchicalRequirement;
+import com.intellij.task.rally.models.Project;
+import com.rallydev.rest.RallyRestApi;
+
+
+public class RallyObjectsProviderTest {
+
+	private static final long ANY_ID = 42;
+
+	@Test
+	public void testStoriesPageStopsAtMax() throws Exception {
+		RallyRestApi restApi = getRestApiWithResponse("/story-response.json");
+		RallyObjectsProvider provider = new RallyObjectsProvider(restApi);
+
+		var page = provider.getStories(ANY_ID, ANY_ID, ANY_ID, TaskFilter.ALL, 0, 2, 0);
+
+		assertEquals(2, page.getItems().size());
+		assertEquals("US101", page.getItems().get(0).FormattedID);
+		assertEquals(2, page.getNextOffset());
+		assertTrue(page.hasMore());
+
+		String url = requestedUrl(restApi);
+		assertTrue(url, url.contains("start=1&"));
+		assertTrue(url, url.contains("pagesize=2&"));
+		assertTrue(url, url.contains("order=" + RallyObjectsProvider.RANK_ORDER));
+	}
+
+	@Test
+	public void testStoriesPageContinuesFromOffset() throws Exception {
+		RallyRestApi restApi = getRestApiWithResponse("/story-response.json");
+		RallyObjectsProvider provider = new RallyObjectsProvider(restApi);
+
+		var page = provider.getStories(ANY_ID, ANY_ID, ANY_ID, TaskFilter.ALL, 2, 10, 0);
+
+		String url = requestedUrl(restApi);
+		assertTrue(url, url.contains("start=3&"));
+		assertEquals(2, page.getOffset());
+		assertFalse(page.hasMore());
+	}
+
+	@Test
+	public void testProjectsSearchedByNamePageByPage() throws Exception {
+		RallyRestApi restApi = getRestApiWithResponse("/project-response.json");
+		RallyObjectsProvider provider = new RallyObjectsProvider(restApi);
+
+		var page = provider.getProjects(ANY_ID, " ab ", 0, 1);
+
+		assertEquals(1, page.getItems().size());
+		assertTrue(page.hasMore());
+		String url = requestedUrl(restApi);
+		assertTrue(url, url.contains("Name+contains+%22ab%22"));
+		assertTrue(url, url.contains("pagesize=1&"));
+		assertTrue(url, url.contains("order=Name"));
+	}
+
+	@Test
+	public void testTopLevelProjects() throws Exception {
+		RallyRestApi restApi = getRestApiWithResponse("/project-response.json");
+		RallyObjectsProvider provider = new RallyObjectsProvider(restApi);
+
+		provider.getChildProjects(ANY_ID, 0, 0, 10);
+
+		String url = requestedUrl(restApi);
+		assertTrue(url, url.contains("Parent+%3D+null"));
+	}
+
+	@Test
+	public void testChildProjects() throws Exception {
+		RallyRestApi restApi = getRestApiWithResponse("/project-response.json");
+		RallyObjectsProvider provider = new RallyObjectsProvider(restApi);
+
+		provider.getChildProjects(ANY_ID, 9216950819L, 0, 10);
+
+		String url = requestedUrl(restApi);
+		assertTrue(url, url.contains("Parent.ObjectID+%3D+9216950819"));
+	}
+
+	@Test
+	public void testSyncFetchesOnlyDelta() throws Exception {
+		RallyRestApi restApi = getRestApiWithResponse("/story-response.json");
+		RallyObjectsProvider provider = new RallyObjectsProvider(restApi);
+
+		var first = provider.syncStories(ANY_ID, ANY_ID, ANY_ID, TaskFilter.ALL);
+		var second = provider.syncStories(ANY_ID, ANY_ID, ANY_ID, TaskFilter.ALL);
+
+		assertEquals(3, second.size());
+		assertEquals(first.get(0).FormattedID, second.get(0).FormattedID);
+		ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+		verify(restApi.getClient(), times(3)).doGet(captor.capture());
+		assertFalse(captor.getAllValues().get(0).contains("LastUpdateDate+%3E"));
+		assertTrue(captor.getAllValues().get(1).contains("LastUpdateDate+%3E"));
+		assertTrue(captor.getAllValues().get(2).contains("fetch=ObjectID&"));
+	}
+
+	@Test
+	public void testSyncedOnceBothSnapshotsExist() throws Exception {
+		RallyRestApi restApi = getRestApiWithResponse("/story-response.json");
+		RallyObjectsProvider provider = new RallyObjectsProvider(restApi);
+		assertFalse(provider.isSynced(ANY_ID, ANY_ID, ANY_ID, TaskFilter.ALL));
+
+		provider.syncStories(ANY_ID, ANY_ID, ANY_ID, TaskFilter.ALL);
+		assertFalse(provider.isSynced(ANY_ID, ANY_ID, ANY_ID, TaskFilter.ALL));
+
+		provider.syncDefects(ANY_ID, ANY_ID, ANY_ID, TaskFilter.ALL);
+		assertTrue(provider.isSynced(ANY_ID, ANY_ID, ANY_ID, TaskFilter.ALL));
+		assertFalse(provider.isSynced(ANY_ID, ANY_ID, ANY_ID + 1, TaskFilter.ALL));
+	}
+
+	@Test
+	public void testOpenTasksOfCurrentUser() throws Exception {
+		RallyRestApi restApi = getRestApiWithResponse("/story-response.json");
+		given(restApi.getClient().doGet(startsWith("/user")))
+				.willReturn("{\"User\": {\"ObjectID\": 777, \"UserName\": \"me@example.com\"}}");
+		RallyObjectsProvider provider = new RallyObjectsProvider(restApi);
+
+		provider.getStories(ANY_ID, ANY_ID, ANY_ID, TaskFilter.of(false, true), 0, 0, 0);
+		provider.getStories(ANY_ID, ANY_ID, ANY_ID, TaskFilter.of(false, true), 0, 0, 0);
+
+		ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+		verify(restApi.getClient(), times(3)).doGet(captor.capture());
+		String url = captor.getValue();
+		assertTrue(url, url.contains("ScheduleState+%3D+Defined"));
+		assertTrue(url, url.contains("Owner.ObjectID+%3D+777"));
+		// current user should be looked up once
+		verify(restApi.getClient(), times(1)).doGet(startsWith("/user"));
+	}
+
+	@Test
+	public void testConcurrentIdenticalQueriesShareRequest() throws Exception {
+		RallyRestApi restApi = getRestApiWithResponse("/story-response.json");
+		String response = restApi.getClient().doGet("");
+		var started = new CountDownLatch(1);
+		var release = new CountDownLatch(1);
+		given(restApi.getClient().doGet(anyString())).willAnswer(invocation -> {
+			started.countDown();
+			release.await();
+			return response;
+		});
+		var inFlight = new ConcurrentHashMap<String, CompletableFuture<Object>>();
+		RallyObjectsProvider provider = new RallyObjectsProvider(restApi, Runnable::run, new RallyRateLimiter(), inFlight);
+		// e.g. a clone of the repository being edited, using the same account
+		RallyObjectsProvider other = new RallyObjectsProvider(restApi, Runnable::run, new RallyRateLimiter(), inFlight);
+		var first = CompletableFuture.supplyAsync(() -> getProjects(provider));
+		started.await();
+		var waiting = new Thread(() -> getProjects(other));
+		waiting.start();
+		while (waiting.getState() != Thread.State.WAITING) {
+			Thread.sleep(1);
+		}
+
+		release.countDown();
+		waiting.join();
+
+		assertEquals(3, first.get().size());
+		verify(restApi.getClient(), times(1)).doGet(startsWith("/project"));
+	}
+
+	@Test
+	public void testFindArtifactsInOneQuery() throws Exception {
+		RallyRestApi restApi = getRestApiWithResponse("/story-response.json");
+		RallyObjectsProvider provider = new RallyObjectsProvider(restApi);
+
+		var artifacts = provider.findArtifacts(ANY_ID, Arrays.asList("us101", "US103"));
+
+		assertEquals("US101", artifacts.get("US101").FormattedID);
+		assertEquals("US103", artifacts.get("US103").FormattedID);
+		String url = requestedUrl(restApi);
+		assertTrue(url, url.startsWith("/hierarchicalrequirement.js?"));
+		assertTrue(url, url.contains("FormattedID+%3D+US101%29+OR+%28FormattedID+%3D+US103"));
+	}
+
+	@Test
+	public void testDescriptionLoadedOnceForStoryVersion() throws Exception {
+		RallyRestApi restApi = getRestApiWithResponse("/story-response.json");
+		given(restApi.getClient().doGet(startsWith("/hierarchicalrequirement/12000000001")))
+				.willReturn("{\"HierarchicalRequirement\": {\"ObjectID\": 12000000001, \"Description\": \"details\"}}");
+		RallyObjectsProvider provider = new RallyObjectsProvider(restApi);
+		var story = new HierarchicalRequirement();
+		story._ref = "/hierarchicalrequirement/12000000001";
+		story.ObjectID = 12000000001L;
+		story._objectVersion = "1";
+
+		assertEquals("details", provider.getDescription(story));
+		assertEquals("details", provider.getDescription(story));
+		verify(restApi.getClient(), times(1)).doGet(startsWith("/hierarchicalrequirement/12000000001"));
+
+		// changed story should be fetched again
+		story._objectVersion = "2";
+		provider.getDescription(story);
+		verify(restApi.getClient(), times(2)).doGet(startsWith("/hierarchicalrequirement/12000000001"));
+	}
+
+	@Test
+	public void testDescriptionsOfSeveralStoriesInOneQuery() throws Exception {
+		RallyRestApi restApi = getRestApiWithResponse("/story-response.json");
+		RallyObjectsProvider provider = new RallyObjectsProvider(restApi);
+		var stories = Arrays.asList(story(12000000001L), story(12000000002L), story(12000000009L));
+
+		var descriptions = provider.getDescriptions(ANY_ID, stories);
+
+		assertEquals("<p>User should be able to log in</p>", descriptions.get(12000000001L));
+		assertEquals("<p>User should be able to log out</p>", descriptions.get(12000000002L));
+		assertNull(descriptions.get(12000000009L));
+		String url = requestedUrl(restApi);
+		assertTrue(url, url.startsWith("/hierarchicalrequirement.js?"));
+		assertTrue(url, url.contains("ObjectID+%3D+12000000001%29+OR+%28ObjectID+%3D+12000000002"));
+
+		// loaded ones are answered from cache, on the EDT too
+		assertTrue(provider.isDescriptionLoaded(stories.get(0)));
+		provider.getDescription(stories.get(1));
+		verify(restApi.getClient(), times(1)).doGet(anyString());
+	}
+
+	@Test
+	public void testCommentsOfSeveralArtifactsInOneQuery() throws Exception {
+		RallyRestApi restApi = getRestApiWithResponse("/story-response.json");
+		given(restApi.getClient().doGet(startsWith("/conversationpost"))).willReturn("{\"QueryResult\": {"
+				+ "\"TotalResultCount\": 2, \"Results\": ["
+				+ "{\"ObjectID\": 2, \"PostNumber\": 2, \"Text\": \"second\", \"Artifact\": {\"ObjectID\": 12000000001}},"
+				+ "{\"ObjectID\": 1, \"PostNumber\": 1, \"Text\": \"first\", \"Artifact\": {\"ObjectID\": 12000000001}}"
+				+ "]}}");
+		RallyObjectsProvider provider = new RallyObjectsProvider(restApi);
+		var stories = provider.getStories(ANY_ID, ANY_ID, ANY_ID);
+
+		var comments = provider.getComments(ANY_ID, stories);
+		provider.getComments(ANY_ID, stories.subList(0, 1));
+
+		assertEquals("first", comments.get(12000000001L).get(0).Text);
+		assertEquals("second", comments.get(12000000001L).get(1).Text);
+		assertTrue(comments.get(12000000002L).isEmpty());
+		verify(restApi.getClient(), times(1)).doGet(startsWith("/conversationpost"));
+		ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+		verify(restApi.getClient(), times(2)).doGet(captor.capture());
+		assertTrue(captor.getValue(), captor.getValue().contains("Artifact.ObjectID+%3D+12000000003"));
+	}
+
+	private static List<Project> getProjects(RallyObjectsProvider provider) {
+		try {
+			return provider.getProjects(ANY_ID);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Test
+	public void testFindArtifactByIndexedReference() throws Exception {
+		RallyRestApi restApi = getRestApiWithResponse("/story-response.json");
+		given(restApi.getClient().doGet(startsWith("/hierarchicalrequirement/12000000002")))
+				.willReturn("{\"HierarchicalRequirement\": {\"ObjectID\": 12000000002, \"FormattedID\": \"US102\", \"Description\": \"details\"}}");
+		RallyObjectsProvider provider = new RallyObjectsProvider(restApi);
+		provider.getStories(ANY_ID, ANY_ID, ANY_ID, TaskFilter.ALL, 0, 0, 0);
+
+		var artifact = provider.findArtifact(ANY_ID, "us102");
+
+		assertEquals("details", ((HierarchicalRequirement) artifact).Description);
+		// resolved artifact should be cached
+		assertSame(artifact, provider.findArtifact(ANY_ID, "US102"));
+		verify(restApi.getClient(), times(1)).doGet(startsWith("/hierarchicalrequirement/12000000002"));
+	}
+
+	@Test
+	public void testFindArtifactQueriesUnknownId() throws Exception {
+		RallyRestApi restApi = getRestApiWithResponse("/story-response.json");
+		RallyObjectsProvider provider = new RallyObjectsProvider(restApi);
+
+		var artifact = provider.findArtifact(ANY_ID, "US101");
+
+		assertEquals("US101", artifact.FormattedID);
+		String url = requestedUrl(restApi);
+		assertTrue(url, url.startsWith("/hierarchicalrequirement.js?"));
+		assertTrue(url, url.contains("FormattedID+%3D+US101"));
+	}
+
+	private static String requestedUrl(RallyRestApi restApi) throws Exception {
+		ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+		verify(restApi.getClient()).doGet(captor.capture());
+		return captor.getValue();
+	}
+
+	private static HierarchicalRequirement story(long objectId) {
+		var story = new HierarchicalRequirement();
+		story._ref = "/hierarchicalrequirement/" + objectId;
+		story.ObjectID = objectId;
+		story._objectVersion = "1";
+		return story;
+	}
+}
@@ -0,0 +1,135 @@
+package com.intellij.task.rally;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class RallyRateLimiterTest {
+
+	private final List<Long> sleeps = new ArrayList<>();
+	private long now;
+	private final RallyRateLimiter limiter = new RallyRateLimiter(10, 2, nanos -> {
+		sleeps.add(nanos);
+		now += nanos;
+	}, () -> now, new Random(42));
+
+	@Test
+	public void testThrottledRequestRetried() throws Exception {
+		var attempts = new AtomicInteger();
+
+		String result = limiter.execute(() -> {
+			if (attempts.incrementAndGet() < 3) {
+				RallyRateLimiter.setThrottled(null, System.currentTimeMillis());
+				throw new IOException("HTTP/1.1 429 Too Many Requests");
+			}
+			return "ok";
+		});
+
+		assertEquals("ok", result);
+		assertEquals(3, attempts.get());
+		assertTrue(limiter.getConcurrencyLimit() < RallyRateLimiter.INITIAL_CONCURRENCY);
+	}
+
+	@Test
+	public void testOtherErrorsNotRetried() throws Exception {
+		var attempts = new AtomicInteger();
+		try {
+			limiter.execute(() -> {
+				attempts.incrementAndGet();
+				throw new IOException("HTTP/1.1 401 Unauthorized");
+			});
+			fail();
+		} catch (IOException e) {
+			assertEquals(1, attempts.get());
+		}
+	}
+
+	@Test
+	public void testStatusInMessageNotRetried() throws Exception {
+		var attempts = new AtomicInteger();
+		try {
+			limiter.execute(() -> {
+				attempts.incrementAndGet();
+				throw new IOException("Story 503 not found in 429 results");
+			});
+			fail();
+		} catch (IOException e) {
+			assertEquals(1, attempts.get());
+		}
+	}
+
+	@Test
+	public void testRetryAfterHonored() throws Exception {
+		var attempts = new AtomicInteger();
+
+		limiter.execute(() -> {
+			if (attempts.incrementAndGet() == 1) {
+				RallyRateLimiter.setThrottled("45", System.currentTimeMillis());
+				throw new IOException("HTTP/1.1 503 Service Unavailable");
+			}
+			return "ok";
+		});
+
+		assertTrue(sleeps.contains(TimeUnit.SECONDS.toNanos(45)));
+	}
+
+	@Test
+	public void testLongRetryAfterFailsFast() throws Exception {
+		var attempts = new AtomicInteger();
+		try {
+			limiter.execute(() -> {
+				attempts.incrementAndGet();
+				RallyRateLimiter.setThrottled("3600", System.currentTimeMillis());
+				throw new IOException("HTTP/1.1 429 Too Many Requests");
+			});
+			fail();
+		} catch (IOException e) {
+			assertEquals(1, attempts.get());
+			assertFalse(sleeps.contains(TimeUnit.SECONDS.toNanos(3600)));
+		}
+		assertEquals(RallyRateLimiter.MAX_RETRY_AFTER, limiter.backoff(1, TimeUnit.HOURS.toNanos(1)));
+	}
+
+	@Test
+	public void testBackoffGrowsWithJitter() throws Exception {
+		for (int attempt = 1; attempt <= 3; attempt++) {
+			long exponential = RallyRateLimiter.BASE_BACKOFF << (attempt - 1);
+			long backoff = limiter.backoff(attempt, null);
+			assertTrue(backoff >= exponential / 2);
+			assertTrue(backoff <= exponential);
+		}
+	}
+
+	@Test
+	public void testRatePaced() throws Exception {
+		for (int i = 0; i < 4; i++) {
+			limiter.execute(() -> "ok");
+		}
+		// burst of 2, then one request per 100ms
+		assertEquals(2, sleeps.size());
+	}
+
+	@Test
+	public void testConcurrencyGrowsBack() throws Exception {
+		try {
+			limiter.execute(() -> {
+				RallyRateLimiter.setThrottled(null, System.currentTimeMillis());
+				throw new IOException("HTTP/1.1 429 Too Many Requests");
+			});
+			fail();
+		} catch (IOException e) {
+			assertEquals(RallyRateLimiter.MIN_CONCURRENCY, limiter.getConcurrencyLimit());
+		}
+		for (int i = 0; i < 10; i++) {
+			limiter.execute(() -> "ok");
+		}
+		assertTrue(limiter.getConcurrencyLimit() > RallyRateLimiter.MIN_CONCURRENCY);
+	}
+}
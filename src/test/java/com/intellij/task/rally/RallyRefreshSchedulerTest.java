@@ -0,0 +1,148 @@
+package com.intellij.task.rally;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class RallyRefreshSchedulerTest {
+
+	private static final long INTERVAL = TimeUnit.MINUTES.toMillis(5);
+
+	private final ScheduledExecutorService timer = mock(ScheduledExecutorService.class);
+	private final Target target = new Target();
+	private boolean active = true;
+	private RallyRefreshScheduler scheduler;
+
+	@Before
+	public void setUp() {
+		doReturn(mock(ScheduledFuture.class)).when(timer).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+		scheduler = new RallyRefreshScheduler(target, timer, Runnable::run, () -> active, new Random(42));
+	}
+
+	@Test
+	public void testFirstRefreshWithinInterval() {
+		scheduler.start(5);
+
+		long delay = lastDelay();
+		assertTrue(delay >= 0 && delay < INTERVAL);
+		assertEquals(0, target.refreshes);
+	}
+
+	@Test
+	public void testRefreshedWithJitter() {
+		scheduler.run();
+
+		assertEquals(1, target.refreshes);
+		assertJittered(INTERVAL, lastDelay());
+	}
+
+	@Test
+	public void testBackoffWhileFailing() {
+		target.failing = true;
+		scheduler.run();
+		scheduler.run();
+
+		assertJittered(INTERVAL * 4, lastDelay());
+
+		target.failing = false;
+		scheduler.run();
+
+		assertJittered(INTERVAL, lastDelay());
+	}
+
+	@Test
+	public void testSkippedWhileInactive() {
+		active = false;
+		scheduler.run();
+		scheduler.run();
+
+		assertEquals(0, target.refreshes);
+		assertJittered(INTERVAL * 4, lastDelay());
+
+		for (int i = 0; i < 10; i++) {
+			scheduler.run();
+		}
+		assertJittered(RallyRefreshScheduler.MAX_DELAY, lastDelay());
+	}
+
+	@Test
+	public void testStoppedWhenDisabled() {
+		target.interval = 0;
+		scheduler.run();
+
+		assertTrue(scheduler.isStopped());
+		assertEquals(0, target.refreshes);
+		verify(timer, never()).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+	}
+
+	@Test
+	public void testStoppedWhenUnconfigured() {
+		target.configured = false;
+		scheduler.run();
+
+		assertTrue(scheduler.isStopped());
+		assertEquals(0, target.refreshes);
+	}
+
+	@Test
+	public void testReplacedBySchedulerOfSameGroup() {
+		Object group = new Object();
+		scheduler.register(group);
+		var replacement = new RallyRefreshScheduler(new Target(), timer, Runnable::run, () -> active, new Random(42));
+		replacement.register(group);
+
+		assertTrue(scheduler.isStopped());
+		scheduler.run();
+		assertEquals(0, target.refreshes);
+
+		RallyRefreshScheduler.stop(group);
+		assertTrue(replacement.isStopped());
+	}
+
+	private long lastDelay() {
+		var delays = ArgumentCaptor.forClass(Long.class);
+		verify(timer, atLeastOnce()).schedule(any(Runnable.class), delays.capture(), eq(TimeUnit.MILLISECONDS));
+		return delays.getValue();
+	}
+
+	private static void assertJittered(long expected, long actual) {
+		assertTrue(actual >= expected * (1 - RallyRefreshScheduler.JITTER));
+		assertTrue(actual <= expected * (1 + RallyRefreshScheduler.JITTER));
+	}
+
+	private static class Target implements RallyRefreshScheduler.Refreshable {
+		boolean configured = true;
+		int interval = 5;
+		int refreshes;
+		boolean failing;
+
+		@Override
+		public boolean isConfigured() {
+			return configured;
+		}
+
+		@Override
+		public int getRefreshInterval() {
+			return interval;
+		}
+
+		@Override
+		public void refreshInBackground() throws Exception {
+			if (failing) {
+				throw new IOException("Connection refused");
+			}
+			refreshes++;
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package com.intellij.task.rally;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class RallyRepositoryTest {
+
+	private final RallyRepository repository = new RallyRepository();
+
+	@Test
+	public void testExtractId() throws Exception {
+		assertEquals("US123", repository.extractId("US123 fix login page"));
+		assertEquals("DE45", repository.extractId("bugfix/DE45-npe"));
+	}
+
+	@Test
+	public void testOrdinaryTokensNotExtracted() throws Exception {
+		assertNull(repository.extractId("Switch to utf8 and sha256 over http2"));
+		assertNull(repository.extractId("Bump log4j to v2"));
+		assertNull(repository.extractId("us123 lower case"));
+		assertNull(repository.extractId("FOOUS123"));
+	}
+
+	@Test
+	public void testFindTaskWithoutWorkspace() throws Exception {
+		assertNull(repository.findTask("US123"));
+
+		repository.setUrl("https://rally1.rallydev.com");
+		repository.setUsername("user");
+		repository.setPassword("token");
+		assertNull(repository.findTask("US123"));
+	}
+}
@@ -0,0 +1,143 @@
+package com.intellij.task.rally;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sbelei.rally.RallyStubServer;
+
+import com.intellij.task.rally.models.HierarchicalRequirement;
+import com.intellij.task.rally.models.Iteration;
+import com.intellij.task.rally.models.Project;
+import com.intellij.task.rally.models.Workspace;
+import com.rallydev.rest.RallyRestApi;
+
+/**
+ * Provider against {@link RallyStubServer} over real HTTP.
+ */
+public class RallyStubServerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private RallyStubServer server;
+	private RallyObjectsProvider provider;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new RallyStubServer();
+		provider = new RallyObjectsProvider(new RallyRestApi(server.getUri(), "user", "token", HttpClients.createDefault()));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.close();
+	}
+
+	@Test
+	public void testStoriesPaged() throws Exception {
+		server.withSynthetic("hierarchicalrequirement", 450);
+
+		List<HierarchicalRequirement> stories = provider.getStories(1, 1, -2);
+
+		assertEquals(450, stories.size());
+		assertEquals("US450", stories.get(449).FormattedID);
+		// pages of RallyObjectsProvider.MAX_PAGE_SIZE
+		assertEquals(3, server.getRequests().size());
+	}
+
+	@Test
+	public void testThrottledRequestRetried() throws Exception {
+		server.withFixture("iteration", "/iteration-response.json");
+		server.throttleNext(1, "0");
+		// throttled responses are recognized by the pooled client's response interceptor
+		RallyHttpClients.Key key = new RallyHttpClients.Key(server.getUri().toString(), "user", "token");
+		HttpClient client = RallyHttpClients.getInstance().acquire(this, key);
+		try {
+			provider = new RallyObjectsProvider(new RallyRestApi(server.getUri(), "user", "token", client));
+
+			List<Iteration> iterations = provider.getIterations(1, 1);
+
+			assertEquals(3, iterations.size());
+			assertEquals(2, server.getRequests().size());
+		} finally {
+			RallyHttpClients.getInstance().release(this, key);
+		}
+	}
+
+	@Test
+	public void testPooledClientAcceptsGzip() throws Exception {
+		server.withFixture("iteration", "/iteration-response.json");
+		RallyHttpClients.Key key = new RallyHttpClients.Key(server.getUri().toString(), "user", "token");
+		HttpClient client = RallyHttpClients.getInstance().acquire(this, key);
+		try {
+			HttpResponse response = client.execute(new HttpGet(server.getUri() + RallyStubServer.WSAPI_PATH + "iteration.js"));
+			String body = EntityUtils.toString(response.getEntity());
+
+			assertTrue(body.contains("TotalResultCount"));
+			assertEquals(1, server.getGzipRequestCount());
+		} finally {
+			RallyHttpClients.getInstance().release(this, key);
+		}
+	}
+
+	@Test
+	public void testProjectsPageSavedToDiskCache() throws Exception {
+		server.withFixture("project", "/project-response.json");
+		RallyRepository repository = repository("user", "token");
+
+		QueryPage<Project> page = repository.fetchProjects(null, 0, 50);
+
+		assertNotNull(page);
+		assertEquals("Parent project", page.getItems().get(0).Parent._refObjectName);
+		List<Project> cached = repository.getCachedProjects();
+		assertEquals("AB", cached.get(0).Name);
+		assertEquals(9216950800L, cached.get(0).Parent.ObjectID);
+		assertEquals("Parent project", cached.get(0).Parent._refObjectName);
+	}
+
+	@Test
+	public void testDiskCacheNotSharedBetweenAccounts() throws Exception {
+		server.withFixture("project", "/project-response.json");
+		RallyRepository repository = repository("user", "token");
+		assertNotNull(repository.fetchProjects(null, 0, 50));
+
+		assertNotNull(repository("user", "token").getCachedProjects());
+		assertNull(repository("other", "token").getCachedProjects());
+		assertNull(repository("user", "other-token").getCachedProjects());
+	}
+
+	private RallyRepository repository(String username, String password) {
+		RallyRepository repository = new RallyRepository();
+		repository.setUrl(server.getUri().toString());
+		repository.setUsername(username);
+		repository.setPassword(password);
+		Workspace workspace = new Workspace();
+		workspace.ObjectID = 1;
+		repository.setWorkspace(workspace);
+		return repository;
+	}
+
+	@Test
+	public void testReplay() throws Exception {
+		server.replay(folder.getRoot().toPath());
+		try {
+			provider.getIterations(1, 1);
+			fail();
+		} catch (IOException e) {
+			// nothing recorded
+			assertEquals(1, server.getRequests().size());
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package com.intellij.task.rally.models;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.sbelei.rally.domain.constants.FetchProfile;
+
+
+public class FetchProfilesTest {
+
+	@Test
+	public void testListProfile() throws Exception {
+		List<String> fields = Arrays.asList(FetchProfiles.of(Defect.class, FetchProfile.LIST));
+		// inherited fields should be fetched as well
+		assertTrue(fields.contains("FormattedID"));
+		assertTrue(fields.contains("State"));
+		// underscored fields are always returned, no need to request them
+		assertFalse(fields.contains("_ref"));
+	}
+
+	@Test
+	public void testDetailProfileIncludesListProfile() throws Exception {
+		List<String> detail = Arrays.asList(FetchProfiles.of(HierarchicalRequirement.class, FetchProfile.DETAIL));
+		assertTrue(detail.containsAll(Arrays.asList(FetchProfiles.of(HierarchicalRequirement.class, FetchProfile.LIST))));
+		assertTrue(detail.contains("Description"));
+		assertFalse(Arrays.asList(FetchProfiles.of(HierarchicalRequirement.class, FetchProfile.LIST)).contains("Description"));
+	}
+}
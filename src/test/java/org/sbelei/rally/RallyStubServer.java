@@ -0,0 +1,350 @@
+package org.sbelei.rally;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for the Rally WSAPI endpoints used by the plugin, to test paging, pooling, compression,
+ * throttling and concurrency without a Rally subscription.
+ * <p>
+ * Serves queries ({@code /slm/webservice/v2.0/defect.js?start=1&pagesize=200}) with real paging and
+ * TotalResultCount, single objects ({@code /slm/webservice/v2.0/defect/1234}) and the current user. Data comes
+ * from the JSON fixtures or is generated. Query filters are not evaluated, every query returns all objects of
+ * its type.
+ * <p>
+ * In record mode requests are forwarded to a live server and responses saved, in replay mode responses are
+ * served from the saved files.
+ */
+public class RallyStubServer implements Closeable {
+
+	public static final String WSAPI_PATH = "/slm/webservice/v2.0/";
+
+	private static final Map<String, String> TYPE_NAMES = new HashMap<String, String>();
+	static {
+		TYPE_NAMES.put("workspace", "Workspace");
+		TYPE_NAMES.put("project", "Project");
+		TYPE_NAMES.put("iteration", "Iteration");
+		TYPE_NAMES.put("hierarchicalrequirement", "HierarchicalRequirement");
+		TYPE_NAMES.put("defect", "Defect");
+		TYPE_NAMES.put("conversationpost", "ConversationPost");
+		TYPE_NAMES.put("user", "User");
+	}
+
+	private final HttpServer server;
+	private final ExecutorService executor = Executors.newFixedThreadPool(8);
+	private final Map<String, List<JsonObject>> objects = new ConcurrentHashMap<String, List<JsonObject>>();
+	private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+	private final AtomicInteger throttledRequests = new AtomicInteger();
+	private final AtomicInteger gzipRequests = new AtomicInteger();
+	private volatile long latencyMillis;
+	private volatile String retryAfter;
+	private volatile URI liveServer;
+	private volatile String liveApiKey;
+	private volatile Path recordings;
+	private volatile boolean replay;
+
+	public RallyStubServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext(WSAPI_PATH, this::handle);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	public URI getUri() {
+		return URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+	}
+
+	/**
+	 * Serves results of a test fixture, e.g. {@code withFixture("iteration", "/iteration-response.json")}.
+	 */
+	public RallyStubServer withFixture(String type, String resourcePath) {
+		JsonObject response = (JsonObject) new JsonParser().parse(TestHelper.getResourceAsReader(resourcePath));
+		List<JsonObject> results = new ArrayList<JsonObject>();
+		for (JsonElement result : response.getAsJsonObject("QueryResult").getAsJsonArray("Results")) {
+			results.add(result.getAsJsonObject());
+		}
+		objects.put(type, results);
+		return this;
+	}
+
+	/**
+	 * Serves {@code count} generated objects of the type, ranked in the order of their ObjectIDs.
+	 */
+	public RallyStubServer withSynthetic(String type, int count) {
+		String prefix = "defect".equals(type) ? "DE" : "US";
+		List<JsonObject> results = new ArrayList<JsonObject>(count);
+		for (int i = 1; i <= count; i++) {
+			long objectId = 10000000000L + i;
+			JsonObject object = new JsonObject();
+			object.addProperty("_ref", getUri() + WSAPI_PATH + type + "/" + objectId);
+			object.addProperty("_objectVersion", "1");
+			object.addProperty("ObjectID", objectId);
+			object.addProperty("FormattedID", prefix + i);
+			object.addProperty("Name", TYPE_NAMES.get(type) + " " + i);
+			object.addProperty("CreationDate", "2020-05-01T10:00:00.000Z");
+			object.addProperty("LastUpdateDate", "2020-05-02T10:00:00.000Z");
+			object.addProperty("DragAndDropRank", String.format("R%08d", i));
+			if ("defect".equals(type)) {
+				object.addProperty("State", "Open");
+			} else {
+				object.addProperty("ScheduleState", "Defined");
+			}
+			results.add(object);
+		}
+		objects.put(type, results);
+		return this;
+	}
+
+	/**
+	 * Delays every response, to simulate a slow network.
+	 */
+	public void setLatency(long millis) {
+		latencyMillis = millis;
+	}
+
+	/**
+	 * Answers the next {@code count} requests with HTTP 429.
+	 *
+	 * @param retryAfter value of the Retry-After header, {@code null} to omit it
+	 */
+	public void throttleNext(int count, String retryAfter) {
+		this.retryAfter = retryAfter;
+		throttledRequests.set(count);
+	}
+
+	/**
+	 * Forwards requests to a live Rally server, saving responses into {@code directory} for {@link #replay(Path)}.
+	 */
+	public void record(URI live, String apiKey, Path directory) throws IOException {
+		Files.createDirectories(directory);
+		liveServer = live;
+		liveApiKey = apiKey;
+		recordings = directory;
+		replay = false;
+	}
+
+	/**
+	 * Serves responses saved by {@link #record(URI, String, Path)}, unknown requests get HTTP 404.
+	 */
+	public void replay(Path directory) {
+		liveServer = null;
+		recordings = directory;
+		replay = true;
+	}
+
+	/**
+	 * @return path and query of the requests received so far
+	 */
+	public List<String> getRequests() {
+		synchronized (requests) {
+			return new ArrayList<String>(requests);
+		}
+	}
+
+	/**
+	 * @return number of requests received so far which accepted a gzipped response
+	 */
+	public int getGzipRequestCount() {
+		return gzipRequests.get();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			String path = exchange.getRequestURI().getRawPath().substring(WSAPI_PATH.length());
+			String query = exchange.getRequestURI().getRawQuery();
+			requests.add(exchange.getRequestURI().toString());
+			String acceptEncoding = exchange.getRequestHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING);
+			if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+				gzipRequests.incrementAndGet();
+			}
+			if (latencyMillis > 0) {
+				Thread.sleep(latencyMillis);
+			}
+			if (throttledRequests.getAndUpdate(count -> Math.max(0, count - 1)) > 0) {
+				if (retryAfter != null) {
+					exchange.getResponseHeaders().set(HttpHeaders.RETRY_AFTER, retryAfter);
+				}
+				send(exchange, 429, "{}");
+				return;
+			}
+			if (liveServer != null) {
+				send(exchange, 200, record(path, query));
+			} else if (replay) {
+				Path recording = recordings.resolve(recordingName(path, query));
+				if (Files.exists(recording)) {
+					send(exchange, 200, new String(Files.readAllBytes(recording), StandardCharsets.UTF_8));
+				} else {
+					send(exchange, 404, "{}");
+				}
+			} else {
+				serve(exchange, path, query);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void serve(HttpExchange exchange, String path, String query) throws IOException {
+		if (path.endsWith(".js")) {
+			path = path.substring(0, path.length() - ".js".length());
+		}
+		String[] segments = path.split("/");
+		String type = segments[0].toLowerCase(Locale.ROOT);
+		if (!TYPE_NAMES.containsKey(type)) {
+			send(exchange, 404, "{}");
+		} else if ("user".equals(type)) {
+			JsonObject user = new JsonObject();
+			user.addProperty("ObjectID", 1);
+			user.addProperty("UserName", "stub@example.com");
+			send(exchange, 200, wrap("User", user));
+		} else if (segments.length > 1) {
+			JsonObject found = find(type, segments[1]);
+			if (found == null) {
+				JsonObject result = new JsonObject();
+				JsonArray errors = new JsonArray();
+				errors.add("Cannot find object to read");
+				result.add("Errors", errors);
+				send(exchange, 200, wrap("OperationResult", result));
+			} else {
+				send(exchange, 200, wrap(TYPE_NAMES.get(type), found));
+			}
+		} else {
+			send(exchange, 200, page(type, parameters(query)));
+		}
+	}
+
+	private JsonObject find(String type, String objectId) {
+		List<JsonObject> all = objects.getOrDefault(type, Collections.<JsonObject>emptyList());
+		for (JsonObject object : all) {
+			if (objectId.equals(object.get("ObjectID").getAsString())) {
+				return object;
+			}
+		}
+		return null;
+	}
+
+	private String page(String type, Map<String, String> parameters) {
+		List<JsonObject> all = objects.getOrDefault(type, Collections.<JsonObject>emptyList());
+		int start = Integer.parseInt(parameters.getOrDefault("start", "1"));
+		int pageSize = Integer.parseInt(parameters.getOrDefault("pagesize", "20"));
+		JsonArray results = new JsonArray();
+		for (int i = start - 1; i >= 0 && i < all.size() && i < start - 1 + pageSize; i++) {
+			results.add(all.get(i));
+		}
+		JsonObject queryResult = new JsonObject();
+		queryResult.add("Errors", new JsonArray());
+		queryResult.add("Warnings", new JsonArray());
+		queryResult.addProperty("TotalResultCount", all.size());
+		queryResult.addProperty("StartIndex", start);
+		queryResult.addProperty("PageSize", pageSize);
+		queryResult.add("Results", results);
+		return wrap("QueryResult", queryResult);
+	}
+
+	private String record(String path, String query) throws IOException {
+		String url = liveServer + WSAPI_PATH + path + (query == null ? "" : "?" + query);
+		HttpGet get = new HttpGet(url);
+		get.setHeader("ZSESSIONID", liveApiKey);
+		try (CloseableHttpClient client = HttpClients.createDefault();
+				CloseableHttpResponse response = client.execute(get)) {
+			String body = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+			Files.write(recordings.resolve(recordingName(path, query)), body.getBytes(StandardCharsets.UTF_8));
+			return body;
+		}
+	}
+
+	private static String recordingName(String path, String query) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1")
+					.digest((path + "?" + query).getBytes(StandardCharsets.UTF_8));
+			StringBuilder name = new StringBuilder();
+			for (byte b : digest) {
+				name.append(String.format("%02x", b));
+			}
+			return name.append(".json").toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static Map<String, String> parameters(String query) throws IOException {
+		Map<String, String> parameters = new HashMap<String, String>();
+		if (query != null) {
+			for (String parameter : query.split("&")) {
+				int separator = parameter.indexOf('=');
+				if (separator > 0) {
+					parameters.put(parameter.substring(0, separator),
+							URLDecoder.decode(parameter.substring(separator + 1), "UTF-8"));
+				}
+			}
+		}
+		return parameters;
+	}
+
+	private static String wrap(String name, JsonObject object) {
+		JsonObject wrapper = new JsonObject();
+		wrapper.add(name, object);
+		return wrapper.toString();
+	}
+
+	private static void send(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		String acceptEncoding = exchange.getRequestHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING);
+		if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+			try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+				gzip.write(bytes);
+			}
+			bytes = compressed.toByteArray();
+			exchange.getResponseHeaders().set(HttpHeaders.CONTENT_ENCODING, "gzip");
+		}
+		exchange.getResponseHeaders().set(HttpHeaders.CONTENT_TYPE, "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+}
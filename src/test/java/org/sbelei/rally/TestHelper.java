@@ -10,6 +10,7 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 
 import com.rallydev.rest.RallyRestApi;
+import com.rallydev.rest.client.HttpClient;
 import com.rallydev.rest.request.QueryRequest;
 import com.rallydev.rest.response.QueryResponse;
 import org.apache.commons.io.IOUtils;
@@ -18,6 +19,7 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonParser;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
 
@@ -62,6 +64,9 @@ public class TestHelper {
 				getResourseAsString(responsePath);
 		QueryResponse stubResponse = new QueryResponse(responseMessage);
 		given(restApi.query(any(QueryRequest.class))).willReturn(stubResponse);
+		HttpClient client = mock(HttpClient.class);
+		given(client.doGet(anyString())).willReturn(responseMessage);
+		given(restApi.getClient()).willReturn(client);
 		return restApi;
 	}
 	/**
@@ -37,4 +37,28 @@ public class FilterHelperTest {
 	public void testQueryDate() throws Exception {
 		assertEquals("2013-07-14T00:00:00.000Z", FilterHelper.queryDate(date("14/07/2013")));		
 	}
+
+	@Test
+	public void testUpdatedSince() throws Exception {
+		assertNull(FilterHelper.updatedSince(0));
+		assertEquals("(LastUpdateDate > 2013-07-14T10:15:30.500Z)", FilterHelper.updatedSince(1373796930500L).toString());
+	}
+
+	@Test
+	public void testBySearchText() throws Exception {
+		assertNull(FilterHelper.bySearchText("  "));
+		assertEquals("(Name contains \"login\")", FilterHelper.bySearchText(" login ").toString());
+		// values with spaces should stay quoted
+		assertEquals("(Name contains \"login page\")", FilterHelper.bySearchText("login page").toString());
+		// ids should be matched by FormattedID too
+		assertEquals("((FormattedID = US123) OR (Name contains \"us123\"))", FilterHelper.bySearchText("us123").toString());
+	}
+
+	@Test
+	public void testByNameContainsQuoted() throws Exception {
+		assertNull(FilterHelper.byNameContains(" "));
+		assertEquals("(Name contains \"team alpha (web)\")", FilterHelper.byNameContains(" team alpha (web) ").toString());
+		assertEquals("(Name contains \"the \\\"best\\\" team\")", FilterHelper.byNameContains("the \"best\" team").toString());
+	}
+
 }
@@ -0,0 +1,30 @@
+package org.sbelei.rally.helpers;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.rallydev.rest.util.QueryFilter;
+
+
+public class QueryFilterBuilderTest {
+
+	@Test
+	public void testChunkedOr() throws Exception {
+		List<QueryFilter> filters = new ArrayList<QueryFilter>();
+		for (int i = 1; i <= 5; i++) {
+			filters.add(FilterHelper.byFormattedId("US" + i));
+		}
+		int maxLength = filters.get(0).or(filters.get(1)).toString().length();
+
+		List<QueryFilter> chunks = QueryFilterBuilder.chunkedOr(filters, maxLength);
+
+		assertEquals(3, chunks.size());
+		assertEquals("((FormattedID = US1) OR (FormattedID = US2))", chunks.get(0).toString());
+		assertEquals("(FormattedID = US5)", chunks.get(2).toString());
+	}
+
+}
@@ -31,4 +31,22 @@ public class QueryRequestDecoratorTest {
 		assertNotNull( request.getRequest().getQueryFilter() );
 	}
 
+	@Test
+	public void testSetPage() throws Exception {
+		request.setPage(41, 20);
+		assertEquals(41, request.getRequest().getStart());
+		assertEquals(20, request.getRequest().getPageSize());
+		// limit shouldn't let client fetch more than one page
+		assertEquals(20, request.getRequest().getLimit());
+	}
+
+	@Test
+	public void testSetFetch() throws Exception {
+		// empty fetch shouldn't override default one
+		request.setFetch();
+		assertEquals("true", request.getRequest().getFetch().toString());
+		request.setFetch("Name", "ObjectID");
+		assertEquals("Name,ObjectID", request.getRequest().getFetch().toString());
+	}
+
 }